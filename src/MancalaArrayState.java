@@ -0,0 +1,542 @@
+import java.util.*;
+
+/**
+ * Stores the state of the Mancala game as a flat array of stone counts, indexed
+ * by pit ordinal. It plays by exactly the same rules as MancalaGameState, but
+ * without keeping track of individual stones, so the AI can search through it
+ * without allocating list nodes or map entries.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public class MancalaArrayState {
+
+	// Constants
+	public static final int PITS = 14;
+	public static final int MANCALA_A = Pit.MANCALA_A.ordinal();
+	public static final int MANCALA_B = Pit.MANCALA_B.ordinal();
+	private static final Pit[] pits = Pit.values();
+	private static final int[] sides = { 0, 0, 0, 0, 0, 0, 2, 1, 1, 1, 1, 1, 1, 2 }; // side of each pit, 2 for Mancalas
+	private static final int UNDO_LAST_SHIFT = 4;
+	private static final int UNDO_PLACEMENTS_SHIFT = 8;
+	private static final int UNDO_CAPTURED_SHIFT = 20;
+	private static final long UNDO_CAPTURE = 1L << 28;
+	private static final long UNDO_TURN_CHANGED = 1L << 29;
+	private static final long SWEEP_ENDED = 1L << 48;
+	private static final long SWEEP_SIDE_B = 1L << 49;
+	private static final int ZOBRIST_COUNTS = 128; // more stones than any pit can hold
+	private static final long[][] zobristPits = new long[PITS][ZOBRIST_COUNTS];
+	private static final long zobristTurn;
+
+	// Fixed seed, so hashes are the same from one run to the next
+	static {
+		Random rand = new Random(0x4D414E43414C41L);
+		for (int pit = 0; pit < PITS; pit++)
+			for (int count = 0; count < ZOBRIST_COUNTS; count++)
+				zobristPits[pit][count] = rand.nextLong();
+		zobristTurn = rand.nextLong();
+	}
+
+	// Instance variables
+	private int[] pitCounts;
+	private int[] sideStones; // stones on the small pits of side A and side B, kept up to date by every move
+	private Player playerTurn;
+	private boolean isGameOver;
+	private int initStones;
+
+	// Constructor
+	public MancalaArrayState() {
+		pitCounts = new int[PITS];
+		sideStones = new int[3];
+		playerTurn = Player.A;
+		isGameOver = false;
+	}
+
+	// Copy-constructor
+	public MancalaArrayState(MancalaArrayState state) {
+		pitCounts = state.pitCounts.clone();
+		sideStones = state.sideStones.clone();
+		playerTurn = state.playerTurn;
+		isGameOver = state.isGameOver;
+		initStones = state.initStones;
+	}
+
+	// Converts from the stone-identity state
+	public MancalaArrayState(MancalaGameState state) {
+		pitCounts = new int[PITS];
+		sideStones = new int[3];
+		for (Pit pit : pits)
+			setPitCount(pit.ordinal(), state.getPitMap().get(pit).size());
+		playerTurn = state.getPlayerTurn();
+		isGameOver = state.isGameOver();
+		initStones = state.getInitStones();
+	}
+
+	// Getters and setters
+
+	public boolean isGameOver() {
+		return isGameOver;
+	}
+
+	public Player getPlayerTurn() {
+		return playerTurn;
+	}
+
+	public void setPlayerTurn(Player playerTurn) {
+		this.playerTurn = playerTurn;
+	}
+
+	public int getInitStones() {
+		return initStones;
+	}
+
+	public int getPitCount(int pit) {
+		return pitCounts[pit];
+	}
+
+	public int getPitCount(Pit pit) {
+		return pitCounts[pit.ordinal()];
+	}
+
+	public void setPitCount(int pit, int count) {
+		sideStones[sides[pit]] += count - pitCounts[pit];
+		pitCounts[pit] = count;
+	}
+
+	/**
+	 * Make this state the same as another one, without allocating.
+	 *
+	 * @param state
+	 *            the state to copy
+	 */
+	public void copyFrom(MancalaArrayState state) {
+		System.arraycopy(state.pitCounts, 0, pitCounts, 0, PITS);
+		System.arraycopy(state.sideStones, 0, sideStones, 0, 3);
+		playerTurn = state.playerTurn;
+		isGameOver = state.isGameOver;
+		initStones = state.initStones;
+	}
+
+	/**
+	 * Get the Zobrist hash of the stone counts and the player to move.
+	 *
+	 * @return the 64-bit hash of this state.
+	 */
+	public long getHash() {
+		long hash = (playerTurn == Player.B) ? zobristTurn : 0;
+		for (int pit = 0; pit < PITS; pit++)
+			hash ^= zobristPits[pit][pitCounts[pit]];
+		return hash;
+	}
+
+	/**
+	 * Convert this state back to a stone-identity state, creating new stones for
+	 * each pit.
+	 *
+	 * @return the stone-identity state with the same stone counts.
+	 */
+	public MancalaGameState toGameState() {
+		return new MancalaGameState(this);
+	}
+
+	/**
+	 * Set up a new game.
+	 *
+	 * @param initStones
+	 *            initial stones per pit to start with
+	 */
+	public void setupGame(int initStones) {
+		this.initStones = initStones;
+		isGameOver = false;
+		playerTurn = Player.A;
+		for (int pit = 0; pit < PITS; pit++)
+			setPitCount(pit, (pit == MANCALA_A || pit == MANCALA_B) ? 0 : initStones);
+	}
+
+	/**
+	 * Get the opposite pit from the specified pit.
+	 *
+	 * @param pit
+	 *            the pit ordinal
+	 * @return the opposite pit ordinal
+	 */
+	public static int getOppositePit(int pit) {
+		if (pit == MANCALA_A || pit == MANCALA_B)
+			return MANCALA_A + MANCALA_B - pit;
+		return 2 * MANCALA_A - pit;
+	}
+
+	/**
+	 * Get the first pit ordinal on the side of the specified player.
+	 *
+	 * @param player
+	 * @return the ordinal of A1 or B1
+	 */
+	public static int getFirstPit(Player player) {
+		return player == Player.A ? Pit.A1.ordinal() : Pit.B1.ordinal();
+	}
+
+	/**
+	 * Get the Mancala ordinal of the specified player.
+	 *
+	 * @param player
+	 * @return the ordinal of MANCALA_A or MANCALA_B
+	 */
+	public static int getMancala(Player player) {
+		return player == Player.A ? MANCALA_A : MANCALA_B;
+	}
+
+	/**
+	 * Switch player turn.
+	 */
+	public void changePlayer() {
+		playerTurn = (playerTurn == Player.A) ? Player.B : Player.A;
+	}
+
+	/**
+	 * Check if the current player can sow from the specified pit.
+	 *
+	 * @param pit
+	 *            the pit ordinal
+	 * @return whether the pit is on the current player's side and is not empty.
+	 */
+	public boolean isSowable(int pit) {
+		int firstPit = getFirstPit(playerTurn);
+		return pit >= firstPit && pit < firstPit + 6 && pitCounts[pit] > 0;
+	}
+
+	/**
+	 * Get a list of sowable pits for current player.
+	 *
+	 * @return the list of sowable pits.
+	 */
+	public EnumSet<Pit> getSowablePits() {
+		EnumSet<Pit> pitSet = EnumSet.noneOf(Pit.class);
+		int firstPit = getFirstPit(playerTurn);
+		for (int pit = firstPit; pit < firstPit + 6; pit++)
+			if (pitCounts[pit] > 0)
+				pitSet.add(pits[pit]);
+		return pitSet;
+	}
+
+	/**
+	 * Sow the stones around the board.
+	 *
+	 * @param pit
+	 *            the pit containing the stones to sow.
+	 */
+	public void sow(Pit pit) {
+		sow(pit.ordinal());
+	}
+
+	/**
+	 * Sow the stones around the board.
+	 *
+	 * @param pit
+	 *            the ordinal of the pit containing the stones to sow.
+	 */
+	public void sow(int pit) {
+		sowSubroutine(pit, getMancala(playerTurn));
+	}
+
+	/**
+	 * To allow sowing on specific pits for current player. This mirrors
+	 * MancalaGameState.sowSubroutine stone for stone, including stones that wrap
+	 * around back into the pit being sowed.
+	 *
+	 * @param pit
+	 * @param mancalaCurrentPlayer
+	 */
+	public void sowSubroutine(int pit, int mancalaCurrentPlayer) {
+
+		// Keep count of stones left to sow
+		int stonesLeft = pitCounts[pit];
+		int mancalaOpponent = getOppositePit(mancalaCurrentPlayer);
+		int firstPit = getFirstPit(playerTurn);
+
+		// Sow the stone to the right pits
+		int pitCurrent = pit;
+		while (pitCounts[pit] > 0) {
+
+			// Go to the next pit, skipping the opponent's Mancala
+			if (++pitCurrent == PITS)
+				pitCurrent = 0;
+			if (pitCurrent == mancalaOpponent && ++pitCurrent == PITS)
+				pitCurrent = 0;
+
+			// Add a stone in the current pit
+			pitCounts[pit]--;
+			pitCounts[pitCurrent]++;
+			sideStones[sides[pit]]--;
+			sideStones[sides[pitCurrent]]++;
+
+			// Check which pit the last stone is in
+			if (--stonesLeft == 0) {
+
+				// If the stone is in its Mancala current player gets other turn
+				if (pitCurrent == mancalaCurrentPlayer)
+					return;
+
+				// Capture if the last stone landed on an empty pit on player's side
+				int pitOpposite = getOppositePit(pitCurrent);
+				if (pitCurrent >= firstPit && pitCurrent < firstPit + 6 && pitCounts[pitCurrent] == 1
+						&& pitCounts[pitOpposite] > 0) {
+					pitCounts[mancalaCurrentPlayer] += 1 + pitCounts[pitOpposite];
+					sideStones[sides[pitCurrent]]--;
+					sideStones[sides[pitOpposite]] -= pitCounts[pitOpposite];
+					pitCounts[pitCurrent] = 0;
+					pitCounts[pitOpposite] = 0;
+				}
+
+				changePlayer();
+
+			}
+
+		}
+
+	}
+
+	/**
+	 * Sow the stones like sow(), and return a small undo record that unmakeMove()
+	 * uses to put the board back. Nothing is allocated, so the AI can search by
+	 * making and unmaking moves on a single state.
+	 *
+	 * @param pit
+	 *            the ordinal of the pit containing the stones to sow.
+	 * @return the undo record: the pit, how many stones were moved, the last pit
+	 *         sown, any capture and whether the turn changed.
+	 */
+	public long makeMove(int pit) {
+
+		int mancalaCurrentPlayer = getMancala(playerTurn);
+		int mancalaOpponent = getOppositePit(mancalaCurrentPlayer);
+		int firstPit = getFirstPit(playerTurn);
+		int stonesLeft = pitCounts[pit];
+		int placements = 0;
+		long undo = pit;
+
+		// Same loop as sowSubroutine, counting how many stones were moved
+		int pitCurrent = pit;
+		while (pitCounts[pit] > 0) {
+			if (++pitCurrent == PITS)
+				pitCurrent = 0;
+			if (pitCurrent == mancalaOpponent && ++pitCurrent == PITS)
+				pitCurrent = 0;
+			pitCounts[pit]--;
+			pitCounts[pitCurrent]++;
+			sideStones[sides[pit]]--;
+			sideStones[sides[pitCurrent]]++;
+			placements++;
+			if (--stonesLeft == 0) {
+				undo |= (long) pitCurrent << UNDO_LAST_SHIFT;
+				if (pitCurrent == mancalaCurrentPlayer)
+					break;
+				int pitOpposite = getOppositePit(pitCurrent);
+				if (pitCurrent >= firstPit && pitCurrent < firstPit + 6 && pitCounts[pitCurrent] == 1
+						&& pitCounts[pitOpposite] > 0) {
+					undo |= UNDO_CAPTURE | ((long) pitCounts[pitOpposite] << UNDO_CAPTURED_SHIFT);
+					pitCounts[mancalaCurrentPlayer] += 1 + pitCounts[pitOpposite];
+					sideStones[sides[pitCurrent]]--;
+					sideStones[sides[pitOpposite]] -= pitCounts[pitOpposite];
+					pitCounts[pitCurrent] = 0;
+					pitCounts[pitOpposite] = 0;
+				}
+				changePlayer();
+				undo |= UNDO_TURN_CHANGED;
+			}
+		}
+
+		return undo | ((long) placements << UNDO_PLACEMENTS_SHIFT);
+
+	}
+
+	/**
+	 * Take back a move made by makeMove(). Moves must be unmade in the reverse
+	 * order they were made.
+	 *
+	 * @param undo
+	 *            the undo record returned by makeMove()
+	 */
+	public void unmakeMove(long undo) {
+
+		// Give the turn back to the player who moved
+		if ((undo & UNDO_TURN_CHANGED) != 0)
+			changePlayer();
+		int mancalaCurrentPlayer = getMancala(playerTurn);
+		int mancalaOpponent = getOppositePit(mancalaCurrentPlayer);
+		int pit = (int) (undo & 0xF);
+
+		// Put the captured stones back
+		if ((undo & UNDO_CAPTURE) != 0) {
+			int pitLast = (int) (undo >>> UNDO_LAST_SHIFT) & 0xF;
+			int captured = (int) (undo >>> UNDO_CAPTURED_SHIFT) & 0xFF;
+			pitCounts[mancalaCurrentPlayer] -= 1 + captured;
+			pitCounts[pitLast] = 1;
+			pitCounts[getOppositePit(pitLast)] = captured;
+			sideStones[sides[pitLast]]++;
+			sideStones[sides[getOppositePit(pitLast)]] += captured;
+		}
+
+		// Walk the same path again, picking the stones back up
+		int placements = (int) (undo >>> UNDO_PLACEMENTS_SHIFT) & 0xFFF;
+		int pitCurrent = pit;
+		for (int i = 0; i < placements; i++) {
+			if (++pitCurrent == PITS)
+				pitCurrent = 0;
+			if (pitCurrent == mancalaOpponent && ++pitCurrent == PITS)
+				pitCurrent = 0;
+			pitCounts[pitCurrent]--;
+			sideStones[sides[pitCurrent]]--;
+		}
+		pitCounts[pit] += placements;
+		sideStones[sides[pit]] += placements;
+
+	}
+
+	/**
+	 * Get the pit that was sowed from an undo record.
+	 *
+	 * @param undo
+	 *            the undo record returned by makeMove()
+	 * @return the pit ordinal
+	 */
+	public static int getUndoPit(long undo) {
+		return (int) (undo & 0xF);
+	}
+
+	/**
+	 * Check an undo record for a capture.
+	 *
+	 * @param undo
+	 *            the undo record returned by makeMove()
+	 * @return whether the last stone captured the stones on the opposite pit
+	 */
+	public static boolean isUndoCapture(long undo) {
+		return (undo & UNDO_CAPTURE) != 0;
+	}
+
+	/**
+	 * Check an undo record for an extra turn.
+	 *
+	 * @param undo
+	 *            the undo record returned by makeMove()
+	 * @return whether the last stone landed in the player's own Mancala
+	 */
+	public static boolean isUndoExtraTurn(long undo) {
+		return (undo & UNDO_TURN_CHANGED) == 0;
+	}
+
+	/**
+	 * End the game like checkIfGameEnded(), and return a record that
+	 * unmakeSweep() uses to put the swept stones back on their pits.
+	 *
+	 * @return the stones that were on each pit of the swept side, or 0 if the
+	 *         game has not ended.
+	 */
+	public long makeSweep() {
+
+		// Only one side can still have stones when the game ends
+		if (!isEitherSideEmpty())
+			return 0;
+		Player player = getStonesOnSide(Player.A) == 0 ? Player.B : Player.A;
+		int firstPit = getFirstPit(player);
+		long sweep = SWEEP_ENDED | (player == Player.B ? SWEEP_SIDE_B : 0);
+		for (int i = 0; i < 6; i++)
+			sweep |= (long) pitCounts[firstPit + i] << (8 * i);
+		checkIfGameEnded();
+		return sweep;
+
+	}
+
+	/**
+	 * Take back the end of the game recorded by makeSweep().
+	 *
+	 * @param sweep
+	 *            the record returned by makeSweep()
+	 */
+	public void unmakeSweep(long sweep) {
+		if ((sweep & SWEEP_ENDED) == 0)
+			return;
+		Player player = (sweep & SWEEP_SIDE_B) != 0 ? Player.B : Player.A;
+		int firstPit = getFirstPit(player);
+		for (int i = 0; i < 6; i++) {
+			int stones = (int) (sweep >>> (8 * i)) & 0xFF;
+			pitCounts[firstPit + i] = stones;
+			pitCounts[getMancala(player)] -= stones;
+			sideStones[player.ordinal()] += stones;
+		}
+		isGameOver = false;
+	}
+
+	/**
+	 * Check if either side has run out of stones, without moving the remaining
+	 * stones to the Mancalas like checkIfGameEnded() does.
+	 *
+	 * @return whether the game would end here
+	 */
+	public boolean isEitherSideEmpty() {
+		return getStonesOnSide(Player.A) == 0 || getStonesOnSide(Player.B) == 0;
+	}
+
+	/**
+	 * Get the stones left on the small pits of one side. The count is kept up to
+	 * date as stones move, so this takes no time.
+	 *
+	 * @param player
+	 * @return the number of stones on the player's side.
+	 */
+	public int getStonesOnSide(Player player) {
+		return sideStones[player.ordinal()];
+	}
+
+	/**
+	 * Check if the game has ended by checking to see if one side has no more
+	 * stones. If so, place all the remaining stones from the other side to its
+	 * Mancala.
+	 *
+	 * @return whether if game has ended or not
+	 */
+	public boolean checkIfGameEnded() {
+
+		int stonesA = getStonesOnSide(Player.A);
+		int stonesB = getStonesOnSide(Player.B);
+		if (stonesA != 0 && stonesB != 0)
+			return false;
+
+		// Place remaining stones to their own Mancala
+		for (int pit = Pit.A1.ordinal(); pit <= Pit.A6.ordinal(); pit++)
+			pitCounts[pit] = 0;
+		for (int pit = Pit.B1.ordinal(); pit <= Pit.B6.ordinal(); pit++)
+			pitCounts[pit] = 0;
+		pitCounts[MANCALA_A] += stonesA;
+		pitCounts[MANCALA_B] += stonesB;
+		sideStones[Player.A.ordinal()] = 0;
+		sideStones[Player.B.ordinal()] = 0;
+		isGameOver = true;
+		return true;
+
+	}
+
+	/**
+	 * Produces a String output of the current numbers of stones in each pit
+	 */
+	@Override
+	public String toString() {
+
+		// Visual text representation of number of stones in each pit
+		StringBuilder sb = new StringBuilder("   ");
+		for (int pit = Pit.B6.ordinal(); pit >= Pit.B1.ordinal(); pit--)
+			sb.append(String.format("%3d", pitCounts[pit]));
+		sb.append('\n');
+		sb.append(String.format("%3d", pitCounts[MANCALA_B]));
+		sb.append(String.format("%0" + 18 + "d", 0).replace("0", " "));
+		sb.append(String.format("%3d", pitCounts[MANCALA_A]));
+		sb.append("\n   ");
+		for (int pit = Pit.A1.ordinal(); pit <= Pit.A6.ordinal(); pit++)
+			sb.append(String.format("%3d", pitCounts[pit]));
+		sb.append("\n\n");
+		return sb.toString();
+
+	}
+
+}
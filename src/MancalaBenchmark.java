@@ -0,0 +1,272 @@
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import java.util.List;
+import java.util.function.*;
+
+import javax.swing.*;
+
+/**
+ * Benchmarks for the game rules, the minimax search and the board painting.
+ * Each benchmark is warmed up first, then timed over several iterations, and
+ * the average time per operation is reported with a 99.9% confidence error.
+ * The results are saved in the JSON layout of JMH, so the files of two commits
+ * can be compared with the same tools.
+ * <p>
+ * Inputs that an operation changes, like the state being sowed, are prepared
+ * in batches outside the timed part, and every result is folded into a
+ * checksum, so the JIT cannot remove the work being measured.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public class MancalaBenchmark {
+
+	// Constants
+	public static final String DEFAULT_FILE = "mancala-benchmark.json";
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int MEASURED_ITERATIONS = 10;
+	private static final long ITERATION_NANOS = 200000000; // 200 ms
+	private static final int MAX_BATCH = 1 << 12;
+	private static final int POSITIONS = 16;
+	private static final int[] MINIMAX_DEPTHS = { 2, 4, 6 };
+	private static final double T_999 = 4.781; // Student's t for 99.9% confidence with 9 degrees of freedom
+
+	// Instance variables
+	private String filter; // only benchmarks whose name contains it are run
+	private List<String> results; // JSON objects of the benchmarks run
+	private List<MancalaGameState> positions; // the same seeded positions for every benchmark
+	private int offset; // operations run so far, so that each batch starts at the next position
+	private int checksum;
+
+	// Constructor
+	public MancalaBenchmark(String filter) {
+		this.filter = filter;
+		results = new ArrayList<>();
+		positions = getPositions(POSITIONS, 42);
+	}
+
+	/**
+	 * Play random moves from the start of a 4 stone game, keeping a position
+	 * every few moves until the game ends.
+	 */
+	private static List<MancalaGameState> getPositions(int count, long seed) {
+		List<MancalaGameState> positions = new ArrayList<>();
+		Random rand = new Random(seed);
+		MancalaGameState state = new MancalaGameState();
+		state.setupGame(4);
+		while (positions.size() < count) {
+			List<Pit> pits = new ArrayList<>(state.getSowablePits());
+			state.sow(pits.get(rand.nextInt(pits.size())));
+			if (state.checkIfGameEnded()) {
+				state.setupGame(4);
+				continue;
+			}
+			if (rand.nextInt(3) == 0)
+				positions.add(new MancalaGameState(state));
+		}
+		for (MancalaGameState position : positions)
+			position.getStoneSequence().clear();
+		return positions;
+	}
+
+	/**
+	 * Get the position for an operation of the current batch.
+	 */
+	private MancalaGameState getPosition(int index) {
+		return positions.get((offset + index) % POSITIONS);
+	}
+
+	/**
+	 * Run all benchmarks that pass the filter.
+	 */
+	public void run() {
+
+		// Rules
+		measure("MancalaGameState.sow", "", count -> {
+			MancalaGameState[] states = new MancalaGameState[count];
+			Pit[] pits = new Pit[count];
+			for (int i = 0; i < count; i++) {
+				states[i] = new MancalaGameState(getPosition(i));
+				pits[i] = states[i].getSowablePits().iterator().next();
+			}
+			return i -> states[i].sow(pits[i]) ? 1 : 0;
+		});
+		measure("MancalaGameState.copy", "", count -> i -> new MancalaGameState(getPosition(i))
+				.getPitMap().size());
+		measure("MancalaGameState.getSowablePits", "",
+				count -> i -> getPosition(i).getSowablePits().size());
+		measure("MancalaGameState.checkIfGameEnded", "", count -> {
+			MancalaGameState[] states = new MancalaGameState[count];
+			for (int i = 0; i < count; i++)
+				states[i] = new MancalaGameState(getPosition(i));
+			return i -> states[i].checkIfGameEnded() ? 1 : 0;
+		});
+		Pit[] pits = { Pit.A1, Pit.A2, Pit.A3, Pit.A4, Pit.A5, Pit.A6, Pit.B1, Pit.B2, Pit.B3, Pit.B4, Pit.B5, Pit.B6 };
+		measure("MancalaGameState.getOppositePit", "",
+				count -> i -> MancalaGameState.getOppositePit(pits[i % pits.length]).ordinal());
+
+		// Search, printing nothing and without the opening book
+		MancalaModel model = new MancalaModel();
+		model.setOpeningBook(null);
+		model.setOutput(new PrintWriter(OutputStream.nullOutputStream()));
+		for (int depth : MINIMAX_DEPTHS)
+			measure("MancalaModel.minimax", "depth=" + depth, count -> i -> {
+				model.setState(new MancalaGameState(getPosition(i)));
+				return model.minimax(depth).ordinal();
+			});
+
+		// Painting, into an image instead of the screen
+		if (isSelected("MancalaBoardPanel.paintComponent")) {
+			MancalaModel boardModel = new MancalaModel();
+			boardModel.setState(new MancalaGameState(positions.get(0)));
+			MancalaBoardPanel boardPanel = new MancalaBoardPanel(boardModel, new MancalaBoardStandard(), new JLabel());
+			boardPanel.getTimer().stop();
+			boardPanel.setupGraphics();
+			boardPanel.setGameStarted(true);
+			List<Function<MancalaBoardPanel, MancalaBoardFormatter>> formatters = Arrays
+					.asList(MancalaBoardStandard::new, MancalaBoardSharp::new, MancalaBoardEggCarton::new);
+			for (Function<MancalaBoardPanel, MancalaBoardFormatter> formatter : formatters)
+				measurePaint(boardPanel, formatter.apply(boardPanel));
+		}
+
+	}
+
+	/**
+	 * Benchmark painting a whole board in the middle of a game, switching the
+	 * board style the way MancalaView does.
+	 */
+	private void measurePaint(MancalaBoardPanel boardPanel, MancalaBoardFormatter formatter) {
+		boardPanel.setBoardFormatter(formatter);
+		formatter.createShapes();
+		boardPanel.randomizeAllPositions();
+		boardPanel.setSize(boardPanel.getPreferredSize());
+		BufferedImage image = new BufferedImage(boardPanel.getWidth(), boardPanel.getHeight(),
+				BufferedImage.TYPE_INT_ARGB);
+		measure("MancalaBoardPanel.paintComponent", "formatter=" + formatter.getClass().getName(), count -> i -> {
+			Graphics2D g2 = image.createGraphics();
+			boardPanel.paintComponent(g2);
+			g2.dispose();
+			return image.getRGB(i % image.getWidth(), i % image.getHeight());
+		});
+	}
+
+	private boolean isSelected(String benchmark) {
+		return filter == null || benchmark.contains(filter);
+	}
+
+	/**
+	 * Time a benchmark and keep its result.
+	 *
+	 * @param benchmark
+	 *            the name of the benchmark
+	 * @param params
+	 *            the parameter as name=value, or an empty string for none
+	 * @param prepare
+	 *            makes the inputs of a batch of operations, untimed, and returns
+	 *            the operation to time, which is given the index in the batch.
+	 */
+	private void measure(String benchmark, String params, IntFunction<IntUnaryOperator> prepare) {
+
+		if (!isSelected(benchmark))
+			return;
+
+		// Grow the batch until one takes long enough to time well, then warm up
+		int batch = 1;
+		while (batch < MAX_BATCH && runBatch(prepare, batch) < ITERATION_NANOS / 100)
+			batch *= 2;
+		for (int i = 0; i < WARMUP_ITERATIONS; i++)
+			runIteration(prepare, batch);
+
+		double[] scores = new double[MEASURED_ITERATIONS];
+		for (int i = 0; i < MEASURED_ITERATIONS; i++)
+			scores[i] = runIteration(prepare, batch);
+
+		// Mean and the 99.9% confidence error, like JMH reports them
+		double mean = Arrays.stream(scores).average().orElse(0);
+		double variance = Arrays.stream(scores).map(score -> (score - mean) * (score - mean)).sum()
+				/ (MEASURED_ITERATIONS - 1);
+		double error = T_999 * Math.sqrt(variance / MEASURED_ITERATIONS);
+		System.out.printf("%-36s %-40s %14.1f +/- %10.1f ns/op%n", benchmark, params, mean, error);
+
+		StringJoiner raw = new StringJoiner(", ");
+		for (double score : scores)
+			raw.add(String.format(Locale.ROOT, "%.3f", score));
+		String paramsJson = params.isEmpty() ? ""
+				: String.format("\"params\": {\"%s\": \"%s\"}, ", params.substring(0, params.indexOf('=')),
+						params.substring(params.indexOf('=') + 1));
+		results.add(String.format(Locale.ROOT,
+				"{\"benchmark\": \"%s\", \"mode\": \"avgt\", \"threads\": 1, \"forks\": 0, "
+						+ "\"warmupIterations\": %d, \"measurementIterations\": %d, %s"
+						+ "\"primaryMetric\": {\"score\": %.3f, \"scoreError\": %.3f, \"scoreUnit\": \"ns/op\", "
+						+ "\"rawData\": [[%s]]}}",
+				benchmark, WARMUP_ITERATIONS, MEASURED_ITERATIONS, paramsJson, mean, error, raw));
+
+	}
+
+	/**
+	 * Run batches for one iteration.
+	 *
+	 * @return the average time of one operation, in nanoseconds
+	 */
+	private double runIteration(IntFunction<IntUnaryOperator> prepare, int batch) {
+		long nanos = 0;
+		long operations = 0;
+		while (nanos < ITERATION_NANOS) {
+			nanos += runBatch(prepare, batch);
+			operations += batch;
+		}
+		return (double) nanos / operations;
+	}
+
+	/**
+	 * Prepare and run one batch of operations.
+	 *
+	 * @return how long the operations took, in nanoseconds
+	 */
+	private long runBatch(IntFunction<IntUnaryOperator> prepare, int batch) {
+		IntUnaryOperator operation = prepare.apply(batch);
+		long start = System.nanoTime();
+		for (int i = 0; i < batch; i++)
+			checksum += operation.applyAsInt(i);
+		long nanos = System.nanoTime() - start;
+		offset += batch;
+		return nanos;
+	}
+
+	/**
+	 * Write the results as a JSON array.
+	 *
+	 * @param file
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void save(File file) throws IOException {
+		try (PrintWriter output = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+			output.println("[");
+			for (int i = 0; i < results.size(); i++)
+				output.println("    " + results.get(i) + (i + 1 < results.size() ? "," : ""));
+			output.println("]");
+		}
+	}
+
+	/**
+	 * Runs the benchmarks and saves the results.
+	 *
+	 * @param args
+	 *            the JSON file and a part of the benchmark names to run, both
+	 *            optional.
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		File file = new File(args.length > 0 ? args[0] : DEFAULT_FILE);
+		MancalaBenchmark benchmark = new MancalaBenchmark(args.length > 1 ? args[1] : null);
+		benchmark.run();
+		benchmark.save(file);
+		System.out.printf("Results written to %s (checksum %x).%n", file, benchmark.checksum);
+		System.exit(0);
+	}
+
+}
@@ -20,6 +20,7 @@ public class MancalaBoardEggCarton implements MancalaBoardFormatter {
 	private static final double pitSmallRadius = 100 - pitPad;
 	private static final float highlightThickness = 3;
 	private static final double stoneSize = 85;
+	private static final int COIN_ANGLES = 64; // how many ways a coin can be turned
 	final static float dash[] = { 10.0f };
 	final static BasicStroke strokeMancala = new BasicStroke(10.0f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f,
 			dash, 0.0f);
@@ -52,6 +53,8 @@ public class MancalaBoardEggCarton implements MancalaBoardFormatter {
 	private double width, height;
 	private BufferedImage imgHeads;
 	private BufferedImage imgTails;
+	private BufferedImage[][] coinSprites; // each face at each angle, drawn the first time it is needed
+	private double coinSpriteScale; // the scale of the screen the sprites were drawn for
 
 	// Constructors
 
@@ -102,6 +105,8 @@ public class MancalaBoardEggCarton implements MancalaBoardFormatter {
 		height = boardEggCarton.height;
 		imgHeads = boardEggCarton.imgHeads;
 		imgTails = boardEggCarton.imgTails;
+		coinSprites = boardEggCarton.coinSprites;
+		coinSpriteScale = boardEggCarton.coinSpriteScale;
 	}
 
 	/**
@@ -272,6 +277,9 @@ public class MancalaBoardEggCarton implements MancalaBoardFormatter {
 		// Set the preferred size for this panel
 		boardPanel.setPreferredSize(new Dimension((int) width, (int) height));
 
+		// The board is drawn again with the new shapes
+		boardPanel.invalidateBoardImage();
+
 	}
 
 	/**
@@ -308,49 +316,20 @@ public class MancalaBoardEggCarton implements MancalaBoardFormatter {
 			g2.fill(eggCartonDiamonds[i]);
 			g2.setTransform(oldForm);
 		}
-		boolean isGameStarted = boardPanel.isGameStarted();
-		for (Pit pit : Pit.sideAPits) {
-			boolean isPlayerATurn = boardPanel.getModel().getState().getPlayerTurn().equals(Player.A);
-			Pit pitNoHighlight = boardPanel.getPitNoHighlight();
-			boolean isMouseOverThisPit = pitNoHighlight == pit;
-			boolean isPitNotEmpty = !boardPanel.getPitGraphicsMap().get(pit).getStoneList().isEmpty();
-			if (isGameStarted && isPlayerATurn && isMouseOverThisPit && isPitNotEmpty) {
-				g2.setColor(DARK);
-				g2.fill(boardPanel.getPitGraphicsMap().get(pit).getOuterBound());
-				g2.setColor(DARKER);
-				g2.fill(eggCartonPitGraphics.get(pit)[0]);
-				g2.setColor(DARKEST);
-				g2.fill(eggCartonPitGraphics.get(pit)[1]);
-			} else {
-				g2.setColor(MEDIUM);
-				g2.fill(boardPanel.getPitGraphicsMap().get(pit).getOuterBound());
-				g2.setColor(DARK);
-				g2.fill(eggCartonPitGraphics.get(pit)[0]);
-				g2.setColor(DARKER);
-				g2.fill(eggCartonPitGraphics.get(pit)[1]);
-			}
-		}
-		for (Pit pit : Pit.sideBPits) {
-			boolean isPlayerBTurn = boardPanel.getModel().getState().getPlayerTurn().equals(Player.B);
-			Pit pitNoHighlight = boardPanel.getPitNoHighlight();
-			boolean isMouseOverThisPit = pitNoHighlight == pit;
-			boolean isPitNotEmpty = !boardPanel.getPitGraphicsMap().get(pit).getStoneList().isEmpty();
-			if (isGameStarted && isPlayerBTurn && isMouseOverThisPit && isPitNotEmpty) {
-				g2.setColor(DARK);
-				g2.fill(boardPanel.getPitGraphicsMap().get(pit).getOuterBound());
-				g2.setColor(DARKER);
-				g2.fill(eggCartonPitGraphics.get(pit)[0]);
-				g2.setColor(DARKEST);
-				g2.fill(eggCartonPitGraphics.get(pit)[1]);
-			} else {
-				g2.setColor(MEDIUM);
-				g2.fill(boardPanel.getPitGraphicsMap().get(pit).getOuterBound());
-				g2.setColor(DARK);
-				g2.fill(eggCartonPitGraphics.get(pit)[0]);
-				g2.setColor(DARKER);
-				g2.fill(eggCartonPitGraphics.get(pit)[1]);
-			}
-		}
+		for (Pit pit : Pit.smallPits)
+			colorPit(g2, pit, MEDIUM, DARK, DARKER);
+	}
+
+	/**
+	 * Fill a small pit and the two rings inside it.
+	 */
+	private void colorPit(Graphics2D g2, Pit pit, Color outer, Color middle, Color inner) {
+		g2.setColor(outer);
+		g2.fill(boardPanel.getPitGraphicsMap().get(pit).getOuterBound());
+		g2.setColor(middle);
+		g2.fill(eggCartonPitGraphics.get(pit)[0]);
+		g2.setColor(inner);
+		g2.fill(eggCartonPitGraphics.get(pit)[1]);
 	}
 
 	/**
@@ -385,30 +364,52 @@ public class MancalaBoardEggCarton implements MancalaBoardFormatter {
 		g2.draw(boardPanel.getPitGraphicsMap().get(Pit.MANCALA_B).getOuterBound());
 		g2.setStroke(oldStroke);
 		g2.setComposite(c_reg);
-		boolean isGameStarted = boardPanel.isGameStarted();
-		boolean isBoardStillAnimating = boardPanel.isBoardStillAnimating();
-		for (Pit pit : Pit.sideAPits) {
-			boolean isPlayerATurn = boardPanel.getModel().getState().getPlayerTurn().equals(Player.A);
-			boolean isPitEmpty = boardPanel.getPitGraphicsMap().get(pit).getStoneList().isEmpty();
-			boolean isHuman = boardPanel.isHuman().get(Player.A);
-			if (isGameStarted && !isBoardStillAnimating && isPlayerATurn && isHuman && !isPitEmpty)
-				g2.setStroke(new BasicStroke(highlightThickness));
-			g2.draw(boardPanel.getPitGraphicsMap().get(pit).getOuterBound());
-			g2.setStroke(oldStroke);
-			g2.draw(eggCartonPitGraphics.get(pit)[0]);
-			g2.draw(eggCartonPitGraphics.get(pit)[1]);
-		}
-		for (Pit pit : Pit.sideBPits) {
-			boolean isPlayerBTurn = boardPanel.getModel().getState().getPlayerTurn().equals(Player.B);
-			boolean isPitEmpty = boardPanel.getPitGraphicsMap().get(pit).getStoneList().isEmpty();
-			boolean isHuman = boardPanel.isHuman().get(Player.B);
-			if (isGameStarted && !isBoardStillAnimating && isPlayerBTurn && isHuman && !isPitEmpty)
-				g2.setStroke(new BasicStroke(highlightThickness));
-			g2.draw(boardPanel.getPitGraphicsMap().get(pit).getOuterBound());
-			g2.setStroke(oldStroke);
-			g2.draw(eggCartonPitGraphics.get(pit)[0]);
-			g2.draw(eggCartonPitGraphics.get(pit)[1]);
+		for (Pit pit : Pit.smallPits)
+			drawPit(g2, pit);
+	}
+
+	/**
+	 * Draw the outlines of a small pit and the two rings inside it.
+	 */
+	private void drawPit(Graphics2D g2, Pit pit) {
+		g2.draw(boardPanel.getPitGraphicsMap().get(pit).getOuterBound());
+		g2.draw(eggCartonPitGraphics.get(pit)[0]);
+		g2.draw(eggCartonPitGraphics.get(pit)[1]);
+	}
+
+	/**
+	 * Darken the pit the mouse is over and thicken the borders of the pits the
+	 * current player can pick, on top of the board.
+	 */
+	@Override
+	public void drawHighlights(Graphics2D g2) {
+
+		if (!boardPanel.isGameStarted())
+			return;
+		Player playerTurn = boardPanel.getModel().getState().getPlayerTurn();
+		EnumSet<Pit> sidePits = playerTurn == Player.A ? Pit.sideAPits : Pit.sideBPits;
+
+		// The darker pit covers its outlines and label, so draw them again
+		Pit pitNoHighlight = boardPanel.getPitNoHighlight();
+		if (sidePits.contains(pitNoHighlight)
+				&& !boardPanel.getPitGraphicsMap().get(pitNoHighlight).getStoneList().isEmpty()) {
+			colorPit(g2, pitNoHighlight, DARK, DARKER, DARKEST);
+			g2.setColor(Color.BLACK);
+			drawPit(g2, pitNoHighlight);
+			drawLabelSmallPit(g2, pitNoHighlight);
 		}
+
+		// Pits on current player border should thicken on that player's turn
+		if (boardPanel.isBoardStillAnimating() || !boardPanel.isHuman().get(playerTurn))
+			return;
+		Stroke oldStroke = g2.getStroke();
+		g2.setStroke(new BasicStroke(highlightThickness));
+		g2.setColor(Color.BLACK);
+		for (Pit pit : sidePits)
+			if (!boardPanel.getPitGraphicsMap().get(pit).getStoneList().isEmpty())
+				g2.draw(boardPanel.getPitGraphicsMap().get(pit).getOuterBound());
+		g2.setStroke(oldStroke);
+
 	}
 
 	/**
@@ -424,18 +425,8 @@ public class MancalaBoardEggCarton implements MancalaBoardFormatter {
 		FontMetrics metrics;
 
 		// Draw labels on small pits
-		metrics = g2.getFontMetrics(fontLabelSmallPits);
-		strHeight = metrics.getHeight();
-		g2.setFont(fontLabelSmallPits);
-		for (Pit pit : Pit.smallPits) {
-			str = pit.toString();
-			strWidth = metrics.stringWidth(str);
-			width = (int) boardPanel.getPitGraphicsMap().get(pit).getOuterBound().getWidth();
-			height = (int) boardPanel.getPitGraphicsMap().get(pit).getOuterBound().getHeight();
-			x = (int) boardPanel.getPitGraphicsMap().get(pit).getOuterBound().getX();
-			y = (int) boardPanel.getPitGraphicsMap().get(pit).getOuterBound().getY();
-			g2.drawString(str, x + (width - strWidth) / 2, y + (height - strHeight) / 2 + metrics.getAscent());
-		}
+		for (Pit pit : Pit.smallPits)
+			drawLabelSmallPit(g2, pit);
 
 		// Draw labels on big pits
 		metrics = g2.getFontMetrics(fontLabelSmallPits);
@@ -455,7 +446,24 @@ public class MancalaBoardEggCarton implements MancalaBoardFormatter {
 	}
 
 	/**
-	 * Draws the stones.
+	 * Draws the label of a small pit, faintly.
+	 */
+	private void drawLabelSmallPit(Graphics2D g2, Pit pit) {
+		Composite oldComposite = g2.getComposite();
+		g2.setComposite(c_trans);
+		FontMetrics metrics = g2.getFontMetrics(fontLabelSmallPits);
+		g2.setFont(fontLabelSmallPits);
+		String str = pit.toString();
+		RectangularShape bound = boardPanel.getPitGraphicsMap().get(pit).getOuterBound();
+		int x = (int) bound.getX() + ((int) bound.getWidth() - metrics.stringWidth(str)) / 2;
+		int y = (int) bound.getY() + ((int) bound.getHeight() - metrics.getHeight()) / 2 + metrics.getAscent();
+		g2.drawString(str, x, y);
+		g2.setComposite(oldComposite);
+	}
+
+	/**
+	 * Draws the stones. Every coin is copied from a sprite as it is, with the
+	 * pixels of the sprite landing on those of the screen.
 	 */
 	@Override
 	public void drawStones(Graphics2D g2) {
@@ -463,29 +471,114 @@ public class MancalaBoardEggCarton implements MancalaBoardFormatter {
 		// Make edges smooth
 		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
+		AffineTransform transform = g2.getTransform();
+		double scale = transform.getScaleX();
+
 		for (Pit pit : Pit.values())
 			for (Stone stone : boardPanel.getPitGraphicsMap().get(pit).getStoneList()) {
 
 				MancalaStoneGraphics stoneGraphics = boardPanel.getStoneGraphicsMap().get(stone).getStoneComponent();
-				BufferedImage img = (stoneGraphics.getCoinSide() == HEADS) ? imgHeads : imgTails;
-				int dstx1 = (int) stoneGraphics.getX();
-				int dsty1 = (int) stoneGraphics.getY();
-				int srcx2, srcy2;
-				srcx2 = img.getWidth();
-				srcy2 = img.getHeight();
-
-				// Drawing the rotated image at the required drawing locations
-				AffineTransform trans = new AffineTransform();
-				trans.setToIdentity();
-				trans.translate(dstx1, dsty1);
-				trans.scale(stoneSize / srcx2, stoneSize / srcy2);
-				trans.rotate(stoneGraphics.getCoinAngle(), srcx2 / 2, srcy2 / 2);
-				g2.drawImage(img, trans, null);
+				Rectangle bounds = boardPanel.getStoneBounds(stoneGraphics);
+				if (!g2.hitClip(bounds.x, bounds.y, bounds.width, bounds.height))
+					continue;
+				BufferedImage sprite = getCoinSprite(stoneGraphics.getCoinSide(), stoneGraphics.getCoinAngle(), scale);
+
+				// Center the sprite on the stone, in the pixels of the screen
+				Point2D center = transform.transform(new Point2D.Double(stoneGraphics.getX() + stoneSize / 2,
+						stoneGraphics.getY() + stoneSize / 2), null);
+				g2.setTransform(identity);
+				g2.drawImage(sprite, (int) Math.round(center.getX() - sprite.getWidth() / 2.0),
+						(int) Math.round(center.getY() - sprite.getHeight() / 2.0), null);
+				g2.setTransform(transform);
 
 			}
 
 	}
 
+	/**
+	 * Get a face of the coin, turned to the nearest of COIN_ANGLES angles and as
+	 * large as a stone on the screen. The sprites are drawn again when the scale of
+	 * the screen changes.
+	 * 
+	 * @param coinSide
+	 *            HEADS or TAILS
+	 * @param coinAngle
+	 *            how much the coin is turned, in radians
+	 * @param scale
+	 *            how many pixels of the screen there are to a pixel of the board
+	 * @return the sprite, with the coin in its center
+	 */
+	private BufferedImage getCoinSprite(int coinSide, double coinAngle, double scale) {
+
+		if (coinSprites == null || coinSpriteScale != scale) {
+			coinSprites = new BufferedImage[2][COIN_ANGLES + 1];
+			coinSpriteScale = scale;
+		}
+		int angle = (int) Math.round(coinAngle / (2 * Math.PI) * COIN_ANGLES) % COIN_ANGLES;
+		BufferedImage[] sprites = coinSprites[coinSide];
+		if (sprites[angle] != null)
+			return sprites[angle];
+
+		// Shrink the face once, then turn the small face for each angle
+		int faceSize = Math.max(1, (int) Math.round(stoneSize * scale));
+		if (sprites[COIN_ANGLES] == null)
+			sprites[COIN_ANGLES] = shrinkImage(coinSide == HEADS ? imgHeads : imgTails, faceSize);
+		BufferedImage face = sprites[COIN_ANGLES];
+
+		// Leave room for the corners of the face however it is turned
+		int spriteSize = (int) Math.ceil(faceSize * Math.sqrt(2)) + 2;
+		BufferedImage sprite = createImage(spriteSize, spriteSize);
+		Graphics2D spriteGraphics = sprite.createGraphics();
+		spriteGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+		spriteGraphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		spriteGraphics.translate(spriteSize / 2.0, spriteSize / 2.0);
+		spriteGraphics.rotate(2 * Math.PI * angle / COIN_ANGLES);
+		spriteGraphics.translate(-faceSize / 2.0, -faceSize / 2.0);
+		spriteGraphics.drawImage(face, 0, 0, null);
+		spriteGraphics.dispose();
+		sprites[angle] = sprite;
+		return sprite;
+
+	}
+
+	/**
+	 * Shrink an image to a square by halving it until it is close to its size, so
+	 * that no pixel of the image is skipped.
+	 * 
+	 * @param img
+	 *            the image to shrink
+	 * @param size
+	 *            the width and height of the shrunk image
+	 * @return the shrunk image
+	 */
+	private BufferedImage shrinkImage(BufferedImage img, int size) {
+		BufferedImage shrunk = img;
+		int width = img.getWidth();
+		int height = img.getHeight();
+		do {
+			width = Math.max(size, width / 2);
+			height = Math.max(size, height / 2);
+			BufferedImage smaller = createImage(width, height);
+			Graphics2D smallerGraphics = smaller.createGraphics();
+			smallerGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+					RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			smallerGraphics.drawImage(shrunk, 0, 0, width, height, null);
+			smallerGraphics.dispose();
+			shrunk = smaller;
+		} while (width > size || height > size);
+		return shrunk;
+	}
+
+	/**
+	 * Create a transparent image in the format of the screen, so it can be copied
+	 * without converting it.
+	 */
+	private BufferedImage createImage(int width, int height) {
+		GraphicsConfiguration configuration = boardPanel.getGraphicsConfiguration();
+		return configuration == null ? new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+				: configuration.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+	}
+
 	/**
 	 * Lets the user know how many stones on the pit the mouse is over.
 	 */
@@ -3,6 +3,10 @@ import java.awt.geom.*;
 
 /**
  * Strategy pattern to draw different types of rectangles on the Mancala board.
+ * <p>
+ * colorBoard, drawBoard and drawLabelsPit draw only what stays the same during
+ * a game. The board panel keeps them in an image until createShapes is called
+ * again, and draws the highlights, stones and stone counts on top every frame.
  * 
  * @author Monsi Magal, Vincent Stowbunenko
  *
@@ -16,6 +20,7 @@ public interface MancalaBoardFormatter {
 	public void drawBoard(Graphics2D g2);
 	public void colorBoard(Graphics2D g2);
 	public void drawLabelsPit(Graphics2D g2);
+	public void drawHighlights(Graphics2D g2);
 	public void drawStones(Graphics2D g2);
 	public void drawLabelsNumberOfStonesPerPit(Graphics2D g2);
 }
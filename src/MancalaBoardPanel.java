@@ -1,6 +1,7 @@
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.*;
+import java.awt.image.*;
 import java.util.*;
 
 import javax.swing.*;
@@ -17,6 +18,7 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 	// Constants
 	private static final long serialVersionUID = 1L;
 	private static final int DELAY = 11;
+	private static final int SEARCH_MILLIS = 1000;
 	private static final Color[] colors = new Color[] { new Color(0xF16A70), new Color(0xB1D877), new Color(0x8CDCDA),
 			new Color(0x4D4D4D) };
 
@@ -24,14 +26,22 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 	private MancalaModel model;
 	private EnumMap<Pit, MancalaPitGraphics> pitGraphicsMap;
 	private EnumMap<Player, Boolean> isHuman; // Whether to know if a player is human or computer
+	private EnumMap<Player, MancalaComputerPlayer.Engine> engines; // How each computer player searches
 	private Map<Stone, Tuple<MancalaStoneGraphics>> stoneGraphicsMap;
+	private Set<MancalaStoneGraphics> animatingStones; // the timer only runs while there are any
 	private boolean gameStarted;
 	private Pit pitNoHighlight; // the pit to highlight when mouse is over the pit
 	private Timer timer;
-	private MancalaBoardPanel previousState;
 	private MancalaBoardFormatter boardFormatter;
+	private BufferedImage boardImage; // the parts of the board that do not change, null until drawn
+	private Rectangle dirtyRegion; // what changed during this tick, null if nothing did
+	private boolean isAnimationPainted; // whether the stones were moving when the whole board was last painted
+	private long followNanos; // when a stone arrived during this tick, so the next one leaves on time
+	private boolean isFollowing; // whether stones that start moving now follow on from that stone
 	private JLabel statusLabel;
+	private String computerError; // why the computer played at random, shown until its move has been sowed
 	private Player playerTurn;
+	private MancalaComputerPlayer computerPlayer;
 
 	// Constructors
 	public MancalaBoardPanel(MancalaModel model, MancalaBoardFormatter boardFormatter, JLabel statusLabel) {
@@ -43,12 +53,16 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 		isHuman = new EnumMap<>(Player.class);
 		for (Player player : Player.values())
 			isHuman.put(player, false);
+		engines = new EnumMap<>(Player.class);
+		for (Player player : Player.values())
+			engines.put(player, MancalaComputerPlayer.Engine.ALPHA_BETA);
 		stoneGraphicsMap = new HashMap<>();
+		animatingStones = new LinkedHashSet<>();
 		gameStarted = false;
 		pitNoHighlight = null;
-		previousState = null;
 		this.boardFormatter = boardFormatter;
 		this.statusLabel = statusLabel;
+		computerPlayer = new MancalaComputerPlayer(model);
 
 		// Call the strategy pattern to draw a specific style of the board
 		boardFormatter.setBoardPanel(this);
@@ -58,39 +72,14 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 		addMouseListener(new MouseReleasedListener());
 		addMouseMotionListener(new MouseMovedListener());
 
-		// Timer for animation
+		// Timer for animation, started when a stone starts moving and stopped when the
+		// last one arrives. Late ticks are merged instead of piling up.
 		timer = new Timer(DELAY, this);
-		timer.start();
+		timer.setCoalesce(true);
+		updateStatus();
 
 	}
 
-	// Copy-constructor. Used to save states for the viewer side.
-	public MancalaBoardPanel(MancalaBoardPanel boardPanel) {
-		model = boardPanel.model;
-		boardFormatter = boardPanel.boardFormatter.cloneThis();
-		boardFormatter.setBoardPanel(this);
-		boardFormatter.setPreferredSize();
-		statusLabel = boardPanel.statusLabel;
-		pitGraphicsMap = new EnumMap<>(Pit.class);
-		for (Pit pit : Pit.values())
-			pitGraphicsMap.put(pit, new MancalaPitGraphics(boardPanel.pitGraphicsMap.get(pit)));
-		stoneGraphicsMap = new HashMap<Stone, Tuple<MancalaStoneGraphics>>();
-		for (Map.Entry<Stone, Tuple<MancalaStoneGraphics>> entry : boardPanel.stoneGraphicsMap.entrySet()) {
-			Stone stone = entry.getKey();
-			Tuple<MancalaStoneGraphics> tuple = entry.getValue();
-			Tuple<MancalaStoneGraphics> newTuple = new Tuple<>(tuple);
-			newTuple.setStoneComponent(new MancalaStoneGraphics(tuple.getStoneComponent()));
-			stoneGraphicsMap.put(stone, newTuple);
-		}
-		gameStarted = boardPanel.gameStarted;
-		previousState = null;
-		playerTurn = boardPanel.playerTurn;
-		isHuman = boardPanel.isHuman;
-		addMouseListener(new MouseReleasedListener());
-		addMouseMotionListener(new MouseMovedListener());
-		timer = new Timer(DELAY, this);
-	}
-
 	// Getters and Setters
 
 	public boolean isGameStarted() {
@@ -101,10 +90,6 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 		this.gameStarted = gameStarted;
 	}
 
-	public MancalaBoardPanel getPreviousState() {
-		return previousState;
-	}
-
 	public Timer getTimer() {
 		return timer;
 	}
@@ -119,6 +104,14 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 
 	public void setBoardFormatter(MancalaBoardFormatter boardFormatter) {
 		this.boardFormatter = boardFormatter;
+		invalidateBoardImage();
+	}
+
+	/**
+	 * Draw the board again on the next repaint, after its shapes have changed.
+	 */
+	public void invalidateBoardImage() {
+		boardImage = null;
 	}
 
 	public MancalaModel getModel() {
@@ -137,8 +130,64 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 		return isHuman;
 	}
 
+	public EnumMap<Player, MancalaComputerPlayer.Engine> getEngines() {
+		return engines;
+	}
+
 	/**
-	 * Set up graphics for a new game.
+	 * Stop the computer from thinking and forget the move it was about to make.
+	 */
+	public void cancelComputerMove() {
+		computerPlayer.cancel();
+	}
+
+	/**
+	 * Take back moves until it is a human player's turn again, so the computer does
+	 * not simply play its move again.
+	 * 
+	 * @return whether any move was taken back
+	 */
+	public boolean undoMove() {
+		if (!model.canUndo())
+			return false;
+		cancelComputerMove();
+		do
+			model.undo();
+		while (model.canUndo() && !isHumanTurn());
+		setupGraphics();
+		repaint();
+		updateStatus();
+		return true;
+	}
+
+	/**
+	 * Play the moves taken back again, up to the next turn of a human player.
+	 * 
+	 * @return whether any move was played again
+	 */
+	public boolean redoMove() {
+		if (!model.canRedo())
+			return false;
+		cancelComputerMove();
+		do
+			model.redo();
+		while (model.canRedo() && !isHumanTurn());
+		setupGraphics();
+		repaint();
+		updateStatus();
+		return true;
+	}
+
+	/**
+	 * Check if it is a human player's turn. If no player is human, every turn
+	 * counts, so undo and redo go one move at a time.
+	 */
+	private boolean isHumanTurn() {
+		return isHuman.get(model.getState().getPlayerTurn()) || !isHuman.containsValue(true);
+	}
+
+	/**
+	 * Set up graphics for a new game, or for a position restored from the history.
 	 */
 	public void setupGraphics() {
 		emptyAllPitGraphics();
@@ -213,7 +262,8 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 		randY -= boardFormatter.getStoneSize() / 2;
 
 		if (animate) {
-			stoneGraphicsMap.get(stone).getStoneComponent().queueAnimating(randX, randY);
+			stoneGraphicsMap.get(stone).getStoneComponent().queueAnimating(randX, randY,
+					isFollowing ? followNanos : System.nanoTime());
 		} else {
 			stoneGraphicsMap.get(stone).getStoneComponent().setX(randX);
 			stoneGraphicsMap.get(stone).getStoneComponent().setY(randY);
@@ -320,18 +370,20 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 		for (Pit pit : Pit.values())
 			emptyPitGraphics(pit);
 		stoneGraphicsMap.clear();
+		animatingStones.clear();
 	}
 
 	/**
-	 * Populate the stones on the pits based on the model.
+	 * Populate the stones on the pits based on the model, Mancalas included, so it
+	 * also works for a position taken from the middle of a game.
 	 * 
 	 * @param pitMap
 	 *            the pit map from the model
 	 */
 	public void populateStones(EnumMap<Pit, LinkedList<Stone>> pitMap) {
-		for (Pit pit : Pit.smallPits)
+		for (Pit pit : Pit.values())
 			for (int i = 0; i < pitMap.get(pit).size(); i++) {
-				MancalaStoneGraphics stoneGraphics = new MancalaStoneGraphics(colors[i]);
+				MancalaStoneGraphics stoneGraphics = new MancalaStoneGraphics(colors[i % colors.length]);
 				Stone stone = pitMap.get(pit).get(i);
 				stoneGraphicsMap.put(stone, new Tuple<>(stoneGraphics, pit));
 				offerStone(pit, stone);
@@ -383,11 +435,18 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 		MancalaStoneGraphics stoneGraphics = stoneGraphicsMap.get(stone).getStoneComponent();
 		Pit pitPrevious = stoneGraphicsMap.get(stone).getPit();
 
-		// Remove the stone from the previous pit and put it in the next pit
+		// Remove the stone from the previous pit and put it in the next pit, which
+		// draws it on top of the stones it covers
 		offerStone(pit, removeStone(pitPrevious, stone));
+		addDirtyRegion(getStoneBounds(stoneGraphics));
 
-		// Tell the stone to start animating
+		// Tell the stone to start animating, waking the timer up
 		stoneGraphics.setAnimating(animate);
+		if (animate) {
+			animatingStones.add(stoneGraphics);
+			if (!timer.isRunning())
+				timer.start();
+		}
 
 		// Randomize the stone position in its next pit while check to make sure that it
 		// is not too close to other pits
@@ -415,10 +474,53 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 	 * Checks if the stones are still moving around.
 	 */
 	public boolean isBoardStillAnimating() {
-		for (Tuple<MancalaStoneGraphics> tuple : stoneGraphicsMap.values())
-			if (tuple.getStoneComponent().isAnimating())
-				return true;
-		return false;
+		return !animatingStones.isEmpty();
+	}
+
+	/**
+	 * Get the area a stone is drawn in, with room for its outline and for a coin
+	 * turned at any angle.
+	 * 
+	 * @param stoneGraphics
+	 * @return the bounds in the coordinates of this panel
+	 */
+	public Rectangle getStoneBounds(MancalaStoneGraphics stoneGraphics) {
+		double stoneSize = boardFormatter.getStoneSize();
+		double pad = stoneSize * (Math.sqrt(2) - 1) / 2 + 2;
+		int x = (int) Math.floor(stoneGraphics.getX() - pad);
+		int y = (int) Math.floor(stoneGraphics.getY() - pad);
+		int size = (int) Math.ceil(stoneSize + 2 * pad) + 1;
+		return new Rectangle(x, y, size, size);
+	}
+
+	/**
+	 * Get the area a pit can be drawn in, with room for its highlighted border
+	 * and for a stone count wider than the pit.
+	 */
+	private Rectangle getPitBounds(Pit pit) {
+		Rectangle bounds = pitGraphicsMap.get(pit).getOuterBound().getBounds();
+		int pad = Math.max(bounds.width, bounds.height) / 2;
+		bounds.grow(pad, pad);
+		return bounds;
+	}
+
+	/**
+	 * Add an area to paint again at the end of this tick.
+	 */
+	private void addDirtyRegion(Rectangle region) {
+		if (dirtyRegion == null)
+			dirtyRegion = region;
+		else
+			dirtyRegion.add(region);
+	}
+
+	/**
+	 * Paint what changed with a single repaint request.
+	 */
+	private void repaintDirtyRegion() {
+		if (dirtyRegion != null)
+			repaint(dirtyRegion);
+		dirtyRegion = null;
 	}
 
 	/**
@@ -427,34 +529,60 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 	@Override
 	public void actionPerformed(ActionEvent event) {
 
-		for (Tuple<MancalaStoneGraphics> tuple : stoneGraphicsMap.values()) {
-
-			MancalaStoneGraphics stoneGraphics = tuple.getStoneComponent();
-
-			// Check if any of the stones are animating. If so, move them to next segment
-			// until they go to their final position.
-			if (stoneGraphics.isAnimating()) {
-				if (stoneGraphics.getDiffX() * (stoneGraphics.getRandX() - stoneGraphics.getNextX()) > 0
-						&& stoneGraphics.getDiffY() * (stoneGraphics.getRandY() - stoneGraphics.getNextY()) > 0) {
-					stoneGraphics.setX(stoneGraphics.getNextX());
-					stoneGraphics.setY(stoneGraphics.getNextY());
-					stoneGraphics.setNextX(stoneGraphics.getNextX() + stoneGraphics.getSegmentX());
-					stoneGraphics.setNextY(stoneGraphics.getNextY() + stoneGraphics.getSegmentY());
-					revalidate();
-					repaint();
-				} else {
-					stoneGraphics.setX(stoneGraphics.getRandX());
-					stoneGraphics.setY(stoneGraphics.getRandY());
+		// Move the animating stones to where they should be by now, so that a late tick
+		// drops frames instead of slowing the game down. A stone that starts moving
+		// when another arrives leaves at the time that one arrived, and may already
+		// be on its way.
+		long nowNanos = System.nanoTime();
+		Set<MancalaStoneGraphics> movedStones = new HashSet<>();
+		boolean isArrived = true;
+		while (isArrived) {
+			isArrived = false;
+			for (MancalaStoneGraphics stoneGraphics : new ArrayList<>(animatingStones)) {
+				if (!movedStones.add(stoneGraphics))
+					continue;
+
+				// Only where the stone was and where it is now has to be painted again
+				addDirtyRegion(getStoneBounds(stoneGraphics));
+				if (stoneGraphics.animate(nowNanos)) {
 					stoneGraphics.setAnimating(false);
+					animatingStones.remove(stoneGraphics);
+					followNanos = stoneGraphics.getEndNanos();
+					isFollowing = true;
 					updateStonePositions(true);
-					revalidate();
-					paintImmediately(getVisibleRect());
+					isFollowing = false;
+					isArrived = true;
 				}
+				addDirtyRegion(getStoneBounds(stoneGraphics));
 			}
-
 		}
 
+		// The highlights and stone counts change when the stones start or stop moving
+		boolean isAnimating = isBoardStillAnimating();
+		if (isAnimating != isAnimationPainted) {
+			isAnimationPainted = isAnimating;
+			dirtyRegion = null;
+			repaint();
+		} else
+			repaintDirtyRegion();
+
+		// Sleep until a stone moves again
+		if (!isAnimating)
+			timer.stop();
+		updateStatus();
+
+	}
+
+	/**
+	 * Show the status of the game, and let the computer think when it is its turn.
+	 * Called on every tick of the animation, and when the game changes while the
+	 * board is still.
+	 */
+	public void updateStatus() {
+
 		// Let the players know the status of the game
+		if (!isBoardStillAnimating())
+			computerError = null;
 		if (isBoardStillAnimating()) {
 			if (pitNoHighlight != null)
 				pitNoHighlight = null;
@@ -462,6 +590,10 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 				statusLabel.setText(String.format("Player %s is sowing the pennies...", playerTurn));
 			else
 				statusLabel.setText(String.format("Player %s is sowing the stones...", playerTurn));
+
+			// Say why the computer played at random while its move is shown
+			if (computerError != null)
+				statusLabel.setText(computerError + " " + statusLabel.getText());
 		} else if (model.getState().isGameOver()) {
 			int playerAScore = model.getState().getPitMap().get(Pit.MANCALA_A).size();
 			int playerBScore = model.getState().getPitMap().get(Pit.MANCALA_B).size();
@@ -477,20 +609,32 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 				if (playerTurn == Player.A && !isHuman.get(Player.A)
 						|| playerTurn == Player.B && !isHuman.get(Player.B)) {
 
-					statusLabel.setText(String.format("Player %s is thinking...", model.getState().getPlayerTurn()));
-					statusLabel.paintImmediately(statusLabel.getVisibleRect());
+					// AI carefully selects a pit in the background, the board keeps animating meanwhile
+					if (!computerPlayer.isThinking()) {
+						statusLabel.setText(String.format("Player %s is thinking...", model.getState().getPlayerTurn()));
+						computerPlayer.think(engines.get(playerTurn), SEARCH_MILLIS, pit -> {
+							model.play(pit);
+							updateStonePositions(true);
+						}, error -> {
+
+							// Play on at random rather than leave the game waiting for a move
+							computerError = String.format("Player %s could not pick a pit (%s) and picked one at random.",
+									playerTurn, error);
+							Pit[] sowablePits = model.getState().getSowablePits().toArray(new Pit[0]);
+							if (sowablePits.length > 0) {
+								model.play(sowablePits[new Random().nextInt(sowablePits.length)]);
+								updateStonePositions(true);
+							}
+							updateStatus();
 
-					// AI carefully selects a pit
-					model.getState().sow(model.minimax(7));
+						});
+					}
 
 					// // AI randomly selects a pit
 					// EnumSet<Pit> sowablePits = model.getState().getSowablePits();
 					// model.getState().sow((Pit) sowablePits.toArray()[new
 					// Random().nextInt(sowablePits.size())]);
 
-					model.getState().checkIfGameEnded();
-					updateStonePositions(true);
-
 				} else {
 					statusLabel.setText(String.format("It's player %s's turn. Pick a pit.", playerTurn));
 				}
@@ -498,6 +642,13 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 				statusLabel.setText("Welcome to the game of Mancala!");
 		}
 
+		// Think about the replies while the human picks a pit and the stones move
+		Player playerNow = model.getState().getPlayerTurn();
+		Player playerNext = Player.values()[1 - playerNow.ordinal()];
+		if (isGameStarted() && !model.getState().isGameOver() && isHuman.get(playerNow) && !isHuman.get(playerNext)
+				&& !computerPlayer.isThinking() && !computerPlayer.isPondering())
+			computerPlayer.ponder(engines.get(playerNext), SEARCH_MILLIS);
+
 	}
 
 	/**
@@ -509,13 +660,47 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 		super.paintComponent(g);
 		Graphics2D g2 = (Graphics2D) g;
 
-		// Color, draw outlines of the board, labels, and stones
-		boardFormatter.colorBoard(g2);
-		boardFormatter.drawBoard(g2);
-		boardFormatter.drawLabelsPit(g2);
+		// Copy the board, then draw what changes between frames on top of it
+		g2.drawImage(getBoardImage(g2), 0, 0, getWidth(), getHeight(), null);
+		boardFormatter.drawHighlights(g2);
 		boardFormatter.drawStones(g2);
 		boardFormatter.drawLabelsNumberOfStonesPerPit(g2);
 
+		// Send the frame to the screen right away, so moving stones do not stutter
+		if (isBoardStillAnimating())
+			Toolkit.getDefaultToolkit().sync();
+
+	}
+
+	/**
+	 * Get the colors, outlines and pit labels of the board, drawing them only when
+	 * the style or the size of the board changed. The image has as many pixels as
+	 * the screen, so it stays sharp on scaled displays.
+	 * 
+	 * @param g2
+	 *            the graphics the board will be painted on
+	 * @return the image of the board, as large as the panel
+	 */
+	private BufferedImage getBoardImage(Graphics2D g2) {
+
+		double scale = g2.getTransform().getScaleX();
+		int width = Math.max(1, (int) Math.ceil(getWidth() * scale));
+		int height = Math.max(1, (int) Math.ceil(getHeight() * scale));
+		if (boardImage != null && boardImage.getWidth() == width && boardImage.getHeight() == height)
+			return boardImage;
+
+		// An image in the format of the screen can be copied without converting it
+		GraphicsConfiguration configuration = getGraphicsConfiguration();
+		boardImage = configuration == null ? new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+				: configuration.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+		Graphics2D imageGraphics = boardImage.createGraphics();
+		imageGraphics.scale(scale, scale);
+		boardFormatter.colorBoard(imageGraphics);
+		boardFormatter.drawBoard(imageGraphics);
+		boardFormatter.drawLabelsPit(imageGraphics);
+		imageGraphics.dispose();
+		return boardImage;
+
 	}
 
 	/**
@@ -556,6 +741,10 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 
 		public void mouseReleased(MouseEvent event) {
 
+			// Only a human player can pick a pit
+			if (!isHuman.get(model.getState().getPlayerTurn()))
+				return;
+
 			// Get the pit number the user clicked on and sow it
 			Point point = event.getPoint();
 			for (Pit pit : Pit.values())
@@ -563,10 +752,7 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 						&& model.getState().getSowablePits().contains(pit)
 						&& pitGraphicsMap.get(pit).getOuterBound().contains(point)) {
 					playerTurn = model.getState().getPlayerTurn();
-					model.getState().savePreviousState();
-					model.getState().sow(pit);
-					model.getState().checkIfGameEnded();
-					previousState = new MancalaBoardPanel(MancalaBoardPanel.this);
+					model.play(pit);
 					updateStonePositions(true);
 					break;
 				}
@@ -595,9 +781,16 @@ public class MancalaBoardPanel extends JPanel implements ActionListener {
 					break;
 				}
 			}
+			if (pitCurrent == pitNoHighlight)
+				return;
+
+			// Paint the pit that lost the highlight and the one that got it
+			if (pitNoHighlight != null)
+				addDirtyRegion(getPitBounds(pitNoHighlight));
+			if (pitCurrent != null)
+				addDirtyRegion(getPitBounds(pitCurrent));
 			pitNoHighlight = pitCurrent;
-			revalidate();
-			repaint();
+			repaintDirtyRegion();
 		}
 
 	}
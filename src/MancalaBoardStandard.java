@@ -1,5 +1,6 @@
 import java.awt.*;
 import java.awt.geom.*;
+import java.util.*;
 
 /**
  * A drawing strategy to draw a standard Mancala board.
@@ -140,6 +141,9 @@ public class MancalaBoardStandard implements MancalaBoardFormatter {
 		((RoundRectangle2D) board).setRoundRect(pad, pad, WIDTH - pad * 2, HEIGHT - pad * 2, pitWidth + pad,
 				pitWidth + pad);
 
+		// The board is drawn again with the new shapes
+		boardPanel.invalidateBoardImage();
+
 	}
 
 	/**
@@ -160,27 +164,8 @@ public class MancalaBoardStandard implements MancalaBoardFormatter {
 		g2.setColor(MEDIUM);
 		g2.fill(boardPanel.getPitGraphicsMap().get(Pit.MANCALA_A).getOuterBound());
 		g2.fill(boardPanel.getPitGraphicsMap().get(Pit.MANCALA_B).getOuterBound());
-		boolean isGameStarted = boardPanel.isGameStarted();
-		for (Pit pit : Pit.sideAPits) {
-			boolean isPlayerATurn = boardPanel.getModel().getState().getPlayerTurn().equals(Player.A);
-			Pit pitNoHighlight = boardPanel.getPitNoHighlight();
-			boolean isMouseOverThisPit = pitNoHighlight == pit;
-			boolean isPitNotEmpty = !boardPanel.getPitGraphicsMap().get(pit).getStoneList().isEmpty();
-			if (isGameStarted && isPlayerATurn && isMouseOverThisPit && isPitNotEmpty)
-				g2.setColor(DARK);
+		for (Pit pit : Pit.smallPits)
 			g2.fill(boardPanel.getPitGraphicsMap().get(pit).getOuterBound());
-			g2.setColor(MEDIUM);
-		}
-		for (Pit pit : Pit.sideBPits) {
-			boolean isPlayerBTurn = boardPanel.getModel().getState().getPlayerTurn().equals(Player.B);
-			Pit pitNoHighlight = boardPanel.getPitNoHighlight();
-			boolean isMouseOverThisPit = pitNoHighlight == pit;
-			boolean isPitNotEmpty = !boardPanel.getPitGraphicsMap().get(pit).getStoneList().isEmpty();
-			if (isGameStarted && isPlayerBTurn && isMouseOverThisPit && isPitNotEmpty)
-				g2.setColor(DARK);
-			g2.fill(boardPanel.getPitGraphicsMap().get(pit).getOuterBound());
-			g2.setColor(MEDIUM);
-		}
 	}
 
 	/**
@@ -188,35 +173,46 @@ public class MancalaBoardStandard implements MancalaBoardFormatter {
 	 */
 	@Override
 	public void drawBoard(Graphics2D g2) {
-
-		// Pits on current player border should thicken on that player's turn
-		Stroke oldStroke = g2.getStroke();
-
-		// Draw the outlines
 		g2.setColor(Color.BLACK);
 		g2.draw(board);
-		g2.draw(boardPanel.getPitGraphicsMap().get(Pit.MANCALA_A).getOuterBound());
-		g2.draw(boardPanel.getPitGraphicsMap().get(Pit.MANCALA_B).getOuterBound());
-		boolean isGameStarted = boardPanel.isGameStarted();
-		boolean isBoardStillAnimating = boardPanel.isBoardStillAnimating();
-		for (Pit pit : Pit.sideAPits) {
-			boolean isPlayerATurn = boardPanel.getModel().getState().getPlayerTurn().equals(Player.A);
-			boolean isPitEmpty = boardPanel.getPitGraphicsMap().get(pit).getStoneList().isEmpty();
-			boolean isHuman = boardPanel.isHuman().get(Player.A);
-			if (isGameStarted && !isBoardStillAnimating && isPlayerATurn && isHuman && !isPitEmpty)
-				g2.setStroke(new BasicStroke(highlightThickness));
-			g2.draw(boardPanel.getPitGraphicsMap().get(pit).getOuterBound());
-			g2.setStroke(oldStroke);
-		}
-		for (Pit pit : Pit.sideBPits) {
-			boolean isPlayerBTurn = boardPanel.getModel().getState().getPlayerTurn().equals(Player.B);
-			boolean isPitEmpty = boardPanel.getPitGraphicsMap().get(pit).getStoneList().isEmpty();
-			boolean isHuman = boardPanel.isHuman().get(Player.B);
-			if (isGameStarted && !isBoardStillAnimating && isPlayerBTurn && isHuman && !isPitEmpty)
-				g2.setStroke(new BasicStroke(highlightThickness));
+		for (Pit pit : Pit.values())
 			g2.draw(boardPanel.getPitGraphicsMap().get(pit).getOuterBound());
-			g2.setStroke(oldStroke);
+	}
+
+	/**
+	 * Darken the pit the mouse is over and thicken the borders of the pits the
+	 * current player can pick, on top of the board.
+	 */
+	@Override
+	public void drawHighlights(Graphics2D g2) {
+
+		if (!boardPanel.isGameStarted())
+			return;
+		Player playerTurn = boardPanel.getModel().getState().getPlayerTurn();
+		EnumSet<Pit> sidePits = playerTurn == Player.A ? Pit.sideAPits : Pit.sideBPits;
+
+		// The darker pit covers its border and label, so draw them again
+		Pit pitNoHighlight = boardPanel.getPitNoHighlight();
+		if (sidePits.contains(pitNoHighlight)
+				&& !boardPanel.getPitGraphicsMap().get(pitNoHighlight).getStoneList().isEmpty()) {
+			g2.setColor(DARK);
+			g2.fill(boardPanel.getPitGraphicsMap().get(pitNoHighlight).getOuterBound());
+			g2.setColor(Color.BLACK);
+			g2.draw(boardPanel.getPitGraphicsMap().get(pitNoHighlight).getOuterBound());
+			drawLabelSmallPit(g2, pitNoHighlight);
 		}
+
+		// Pits on current player border should thicken on that player's turn
+		if (boardPanel.isBoardStillAnimating() || !boardPanel.isHuman().get(playerTurn))
+			return;
+		Stroke oldStroke = g2.getStroke();
+		g2.setStroke(new BasicStroke(highlightThickness));
+		g2.setColor(Color.BLACK);
+		for (Pit pit : sidePits)
+			if (!boardPanel.getPitGraphicsMap().get(pit).getStoneList().isEmpty())
+				g2.draw(boardPanel.getPitGraphicsMap().get(pit).getOuterBound());
+		g2.setStroke(oldStroke);
+
 	}
 
 	/**
@@ -232,18 +228,8 @@ public class MancalaBoardStandard implements MancalaBoardFormatter {
 		FontMetrics metrics;
 
 		// Draw labels on small pits
-		metrics = g2.getFontMetrics(fontLabelSmallPits);
-		strHeight = metrics.getHeight();
-		g2.setFont(fontLabelSmallPits);
-		for (Pit pit : Pit.smallPits) {
-			str = pit.toString();
-			strWidth = metrics.stringWidth(str);
-			width = (int) boardPanel.getPitGraphicsMap().get(pit).getOuterBound().getWidth();
-			height = (int) boardPanel.getPitGraphicsMap().get(pit).getOuterBound().getHeight();
-			x = (int) boardPanel.getPitGraphicsMap().get(pit).getOuterBound().getX();
-			y = (int) boardPanel.getPitGraphicsMap().get(pit).getOuterBound().getY();
-			g2.drawString(str, x + (width - strWidth) / 2, y + (height - strHeight) / 2 + metrics.getAscent());
-		}
+		for (Pit pit : Pit.smallPits)
+			drawLabelSmallPit(g2, pit);
 
 		// Draw labels on big pits
 		metrics = g2.getFontMetrics(fontLabelMancalas);
@@ -268,6 +254,22 @@ public class MancalaBoardStandard implements MancalaBoardFormatter {
 
 	}
 
+	/**
+	 * Draws the label of a small pit, faintly.
+	 */
+	private void drawLabelSmallPit(Graphics2D g2, Pit pit) {
+		Composite oldComposite = g2.getComposite();
+		g2.setComposite(c_trans);
+		FontMetrics metrics = g2.getFontMetrics(fontLabelSmallPits);
+		g2.setFont(fontLabelSmallPits);
+		String str = pit.toString();
+		RectangularShape bound = boardPanel.getPitGraphicsMap().get(pit).getOuterBound();
+		int x = (int) bound.getX() + ((int) bound.getWidth() - metrics.stringWidth(str)) / 2;
+		int y = (int) bound.getY() + ((int) bound.getHeight() - metrics.getHeight()) / 2 + metrics.getAscent();
+		g2.drawString(str, x, y);
+		g2.setComposite(oldComposite);
+	}
+
 	/**
 	 * Draws the stones.
 	 */
@@ -276,6 +278,9 @@ public class MancalaBoardStandard implements MancalaBoardFormatter {
 		for (Pit pit : Pit.values())
 			for (Stone stone : boardPanel.getPitGraphicsMap().get(pit).getStoneList()) {
 				MancalaStoneGraphics stoneGraphics = boardPanel.getStoneGraphicsMap().get(stone).getStoneComponent();
+				Rectangle bounds = boardPanel.getStoneBounds(stoneGraphics);
+				if (!g2.hitClip(bounds.x, bounds.y, bounds.width, bounds.height))
+					continue;
 				g2.setColor(stoneGraphics.getColor());
 				g2.fill(new Ellipse2D.Double(stoneGraphics.getX(), stoneGraphics.getY(), stoneSize, stoneSize));
 				g2.setColor(Color.BLACK);
@@ -0,0 +1,238 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+import javax.swing.*;
+
+/**
+ * Lets the computer think about its move on a background thread, so the board
+ * keeps animating and responding while the AI searches. The chosen pit is handed
+ * back on the event dispatch thread.
+ * <p>
+ * While a human picks a pit, the computer ponders: it searches the positions
+ * each of the human's moves could lead to, the likely ones longest, and keeps
+ * the best reply to each. If the human plays one of them, the reply is played
+ * at once. Every pondered search also fills the shared transposition table, so
+ * even an unexpected move is answered sooner. Monte Carlo search simply grows
+ * its tree from the current position, up to a limit, and keeps it for the next
+ * search.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public class MancalaComputerPlayer {
+
+	/**
+	 * The search the computer uses to pick its move.
+	 */
+	public enum Engine {
+		ALPHA_BETA, MONTE_CARLO
+	}
+
+	// Constants
+	private static final long SCOUT_MILLIS = 50; // first look at every reply, to sort them by how likely they are
+	private static final int MAX_TURN_MOVES = 4; // extra turns followed when listing the human's moves
+	private static final int MAX_SLICE_BUDGETS = 8; // longest pondering of one reply, in thinking budgets
+	private static final long MAX_PONDER_PLAYOUTS = 1 << 22; // most playouts Monte Carlo search ponders
+
+	// Instance variables
+	private MancalaModel model;
+	private ExecutorService executor;
+	private CompletableFuture<Pit> move; // the move being searched, only touched on the event dispatch thread
+	private Future<?> ponder; // the pondering under way, only touched on the event dispatch thread
+	private AtomicBoolean isPonderStopped; // tells the pondering under way to give up
+	private AtomicBoolean isMoveStopped; // tells the move being searched to give up, even if it has not started
+	private Map<Long, Pair<Pit, Long>> replies; // pondered reply to each position, with how long it was searched
+
+	// Constructor
+	public MancalaComputerPlayer(MancalaModel model) {
+		this.model = model;
+		executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Mancala AI");
+			thread.setDaemon(true);
+			return thread;
+		});
+		replies = new ConcurrentHashMap<>();
+	}
+
+	// Getters
+
+	public boolean isThinking() {
+		return move != null;
+	}
+
+	public boolean isPondering() {
+		return ponder != null;
+	}
+
+	/**
+	 * Start searching for a move of the current player in the background. Must be
+	 * called on the event dispatch thread.
+	 *
+	 * @param engine
+	 *            which search to use.
+	 * @param budgetMillis
+	 *            how long the AI can think, in milliseconds.
+	 * @param onMove
+	 *            called with the chosen pit on the event dispatch thread, unless
+	 *            the search is cancelled first.
+	 * @param onError
+	 *            called instead on the event dispatch thread with what went wrong,
+	 *            if the search failed.
+	 */
+	public void think(Engine engine, long budgetMillis, Consumer<Pit> onMove, Consumer<Throwable> onError) {
+
+		cancel();
+
+		// Search on a snapshot, the game state belongs to the event dispatch thread
+		MancalaArrayState state = new MancalaArrayState(model.getState());
+		// Time spent pondering this position counts towards the budget
+		Pair<Pit, Long> reply = (engine == Engine.ALPHA_BETA) ? replies.get(state.getHash()) : null;
+		long millis = (reply == null) ? budgetMillis : budgetMillis - reply.y;
+		AtomicBoolean isStopped = new AtomicBoolean();
+		isMoveStopped = isStopped;
+		CompletableFuture<Pit> future;
+		if (millis <= 0)
+			future = CompletableFuture.completedFuture(reply.x);
+		else
+			future = CompletableFuture.supplyAsync(() -> {
+
+				// Cancelling does not keep a queued search from starting, so it checks itself
+				if (isStopped.get())
+					return null;
+				return engine == Engine.MONTE_CARLO ? model.monteCarlo(state, millis, isStopped::get)
+						: model.iterativeDeepening(state, millis, isStopped::get);
+
+			}, executor);
+		move = future;
+
+		future.whenComplete((pit, error) -> SwingUtilities.invokeLater(() -> {
+
+			// Ignore the result if the search was cancelled or replaced by a newer one
+			if (move != future)
+				return;
+			move = null;
+			if (error != null) {
+				Throwable cause = (error instanceof CompletionException && error.getCause() != null)
+						? error.getCause() : error;
+				cause.printStackTrace();
+				onError.accept(cause);
+			} else if (pit != null)
+				onMove.accept(pit);
+
+		}));
+
+	}
+
+	/**
+	 * Start searching the replies to the moves the human may make, in the
+	 * background, until the human moves. Must be called on the event dispatch
+	 * thread, during the human's turn.
+	 *
+	 * @param engine
+	 *            the search the computer will answer with.
+	 * @param budgetMillis
+	 *            how long the AI would think about a reply, in milliseconds. Replies
+	 *            pondered at least that long are played at once, the others get
+	 *            the rest of the time.
+	 */
+	public void ponder(Engine engine, long budgetMillis) {
+
+		cancel();
+
+		MancalaArrayState state = new MancalaArrayState(model.getState());
+		AtomicBoolean isStopped = new AtomicBoolean();
+		isPonderStopped = isStopped;
+		replies.clear();
+		if (engine == Engine.MONTE_CARLO)
+			ponder = executor.submit(() -> model.getMonteCarloSearch().search(state, MAX_PONDER_PLAYOUTS,
+					Long.MAX_VALUE, isStopped::get));
+		else
+			ponder = executor.submit(() -> ponder(state, budgetMillis, isStopped));
+
+	}
+
+	/**
+	 * Search the replies, first briefly to see which moves the human will likely
+	 * make, then the likely ones first, longer each round. Stops once every reply
+	 * was searched for the longest slice.
+	 */
+	private void ponder(MancalaArrayState state, long budgetMillis, AtomicBoolean isStopped) {
+
+		MancalaParallelSearch search = model.getParallelSearch();
+		Player human = state.getPlayerTurn();
+		Map<Long, MancalaArrayState> positions = new LinkedHashMap<>();
+		addReplyPositions(state, human, MAX_TURN_MOVES, positions);
+		List<MancalaArrayState> likely = new ArrayList<>(positions.values());
+		if (likely.isEmpty())
+			return;
+		Map<MancalaArrayState, Integer> scores = new HashMap<>();
+
+		long maxSlice = MAX_SLICE_BUDGETS * budgetMillis;
+		for (long slice = SCOUT_MILLIS;; slice = Math.min(Math.max(budgetMillis, 2 * slice), maxSlice)) {
+			for (MancalaArrayState position : likely) {
+				if (isStopped.get())
+					return;
+
+				// The stop is checked inside the search too, a new search must not forget it
+				Pair<Pit, Integer> reply = search.searchTimed(position, slice, isStopped::get);
+
+				// A stopped search did not get its whole slice
+				if (isStopped.get() || reply.x == null)
+					return;
+				replies.put(position.getHash(), new Pair<>(reply.x, slice));
+
+				// The computer's score, the human likely makes the move worst for the computer
+				scores.put(position, reply.y);
+			}
+			if (slice >= maxSlice)
+				return;
+			likely.sort(Comparator.comparing(scores::get));
+		}
+
+	}
+
+	/**
+	 * List the positions where the computer moves next after the human's turn,
+	 * following the human's extra turns.
+	 */
+	private static void addReplyPositions(MancalaArrayState state, Player human, int moves,
+			Map<Long, MancalaArrayState> positions) {
+		int firstPit = MancalaArrayState.getFirstPit(human);
+		for (int pit = firstPit; pit < firstPit + 6; pit++)
+			if (state.getPitCount(pit) > 0) {
+				long undo = state.makeMove(pit);
+				if (!state.isEitherSideEmpty()) {
+					if (state.getPlayerTurn() != human)
+						positions.putIfAbsent(state.getHash(), new MancalaArrayState(state));
+					else if (moves > 1)
+						addReplyPositions(state, human, moves - 1, positions);
+				}
+				state.unmakeMove(undo);
+			}
+	}
+
+	/**
+	 * Stop thinking and pondering, and throw away the move being searched. The
+	 * replies pondered so far are kept. Must be called on the event dispatch
+	 * thread.
+	 */
+	public void cancel() {
+		if (ponder != null) {
+			isPonderStopped.set(true);
+			ponder.cancel(false);
+			model.getParallelSearch().stop();
+			model.getMonteCarloSearch().stop();
+			ponder = null;
+		}
+		if (move != null) {
+			isMoveStopped.set(true);
+			move.cancel(false);
+			model.getParallelSearch().stop();
+			model.getMonteCarloSearch().stop();
+			move = null;
+		}
+	}
+
+}
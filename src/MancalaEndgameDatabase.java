@@ -0,0 +1,338 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Endgame database for the Mancala AI. For every position with up to a given
+ * number of stones left on the small pits, it stores how many more stones the
+ * player to move will get than the opponent until the game ends, if both play
+ * perfectly. The search looks those positions up instead of guessing from the
+ * current score.
+ * <p>
+ * Positions are stored from the mover's point of view: the mover's six pits
+ * come first, then the opponent's. Each one gets a unique index from its pit
+ * counts through the combinatorial number system, so a lookup is a handful of
+ * table reads and one byte from a memory-mapped file.
+ * <p>
+ * The database is generated backwards from the end of the game. A move either
+ * puts stones in a Mancala or captures, which leaves fewer stones on the small
+ * pits, or it only moves the mover's stones further along the mover's side.
+ * Positions are therefore solved by stone count, and within a stone count from
+ * the highest "potential" (sum of stones times their distance along their
+ * side) down, so every position a move leads to is already solved. Positions
+ * with the same stone count and potential are solved in parallel.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public class MancalaEndgameDatabase {
+
+	// Constants
+	public static final String DEFAULT_FILE = "mancala-endgame.db";
+	public static final int DEFAULT_STONES = 14;
+	public static final int MAX_STONES = 100; // scores must fit in a byte
+	private static final int MAGIC = 0x4D454442; // "MEDB"
+	private static final int HEADER_BYTES = 8;
+	private static final int SMALL_PITS = 12;
+	private static final int CHUNK_BITS = 30; // one mapped buffer can hold at most 2 GB
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+	private static final long[][] binomials = new long[MAX_STONES + SMALL_PITS + 1][SMALL_PITS + 1];
+
+	// Pascal's triangle, for ranking pit counts
+	static {
+		for (int n = 0; n < binomials.length; n++) {
+			binomials[n][0] = 1;
+			for (int k = 1; k <= Math.min(n, SMALL_PITS); k++)
+				binomials[n][k] = binomials[n - 1][k - 1] + (k < n ? binomials[n - 1][k] : 0);
+		}
+	}
+
+	// Instance variables
+	private int maxStones;
+	private MappedByteBuffer[] chunks;
+
+	// Constructors
+
+	/**
+	 * Open a database file generated by generate().
+	 *
+	 * @param file
+	 *            the database file
+	 * @throws IOException
+	 *             if the file cannot be read or is not an endgame database
+	 */
+	public MancalaEndgameDatabase(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			channel.read(header, 0);
+			header.flip();
+			if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC)
+				throw new IOException(file + " is not a Mancala endgame database");
+			maxStones = header.getInt();
+			if (maxStones < 0 || maxStones > MAX_STONES || channel.size() < HEADER_BYTES + getEntryCount(maxStones))
+				throw new IOException(file + " is damaged");
+			chunks = map(channel, FileChannel.MapMode.READ_ONLY, getEntryCount(maxStones));
+		}
+	}
+
+	private MancalaEndgameDatabase(int maxStones, MappedByteBuffer[] chunks) {
+		this.maxStones = maxStones;
+		this.chunks = chunks;
+	}
+
+	// Getters
+
+	public int getMaxStones() {
+		return maxStones;
+	}
+
+	/**
+	 * Get how many positions a database holds.
+	 *
+	 * @param maxStones
+	 *            the most stones left on the small pits
+	 * @return the number of ways to place up to maxStones stones on 12 pits
+	 */
+	public static long getEntryCount(int maxStones) {
+		return binomials[maxStones + SMALL_PITS][SMALL_PITS];
+	}
+
+	/**
+	 * Check if a position is in the database.
+	 *
+	 * @param state
+	 * @return whether few enough stones are left on the small pits
+	 */
+	public boolean contains(MancalaArrayState state) {
+		return state.getStonesOnSide(Player.A) + state.getStonesOnSide(Player.B) <= maxStones;
+	}
+
+	/**
+	 * Get the final score of a position if both players play perfectly from here.
+	 * The position must be in the database.
+	 *
+	 * @param state
+	 *            the position, after the last move was made but before the
+	 *            remaining stones are swept into the Mancalas.
+	 * @return player A's final Mancala minus player B's
+	 */
+	public int getScore(MancalaArrayState state) {
+		int score = state.getPitCount(MancalaArrayState.MANCALA_A) - state.getPitCount(MancalaArrayState.MANCALA_B);
+
+		// The game is over, each side keeps its own stones
+		if (state.isEitherSideEmpty())
+			return score + state.getStonesOnSide(Player.A) - state.getStonesOnSide(Player.B);
+
+		int future = get(getIndex(state));
+		return state.getPlayerTurn() == Player.A ? score + future : score - future;
+	}
+
+	/**
+	 * Get the index of a position: all positions with fewer stones on the small
+	 * pits come first, then the pit counts are ranked in lexicographic order, the
+	 * mover's pits first.
+	 */
+	private long getIndex(MancalaArrayState state) {
+		int moverPit = MancalaArrayState.getFirstPit(state.getPlayerTurn());
+		int opponentPit = MancalaArrayState.getFirstPit(state.getPlayerTurn() == Player.A ? Player.B : Player.A);
+		int stonesLeft = state.getStonesOnSide(Player.A) + state.getStonesOnSide(Player.B);
+		long index = binomials[stonesLeft + SMALL_PITS - 1][SMALL_PITS];
+
+		// Skip the positions with fewer stones in this pit, the last pit gets the rest
+		for (int i = 0; i < SMALL_PITS - 1; i++) {
+			int count = state.getPitCount(i < 6 ? moverPit + i : opponentPit + i - 6);
+			int pitsAfter = SMALL_PITS - 1 - i;
+			index += binomials[stonesLeft + pitsAfter][pitsAfter] - binomials[stonesLeft - count + pitsAfter][pitsAfter];
+			stonesLeft -= count;
+		}
+
+		return index;
+	}
+
+	private int get(long index) {
+		return chunks[(int) (index >>> CHUNK_BITS)].get((int) (index & CHUNK_MASK));
+	}
+
+	private void put(long index, int score) {
+		chunks[(int) (index >>> CHUNK_BITS)].put((int) (index & CHUNK_MASK), (byte) score);
+	}
+
+	/**
+	 * Map the entries of a database file in chunks.
+	 */
+	private static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long entries)
+			throws IOException {
+		MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((entries + CHUNK_MASK) >>> CHUNK_BITS)];
+		for (int i = 0; i < chunks.length; i++) {
+			long start = (long) i << CHUNK_BITS;
+			chunks[i] = channel.map(mode, HEADER_BYTES + start, Math.min(CHUNK_MASK + 1, entries - start));
+		}
+		return chunks;
+	}
+
+	/**
+	 * Solve every position with up to maxStones stones on the small pits and write
+	 * the results to a file.
+	 *
+	 * @param file
+	 *            the file to write. It is replaced if it exists.
+	 * @param maxStones
+	 *            the most stones left on the small pits
+	 * @param threads
+	 *            how many threads to solve positions on
+	 * @return the database, ready for lookups
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static MancalaEndgameDatabase generate(File file, int maxStones, int threads) throws IOException {
+
+		if (maxStones < 0 || maxStones > MAX_STONES)
+			throw new IllegalArgumentException("maxStones must be between 0 and " + MAX_STONES);
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			header.putInt(MAGIC).putInt(maxStones).flip();
+			channel.write(header, 0);
+			MancalaEndgameDatabase database = new MancalaEndgameDatabase(maxStones,
+					map(channel, FileChannel.MapMode.READ_WRITE, getEntryCount(maxStones)));
+			database.solveAll(threads);
+			for (MappedByteBuffer chunk : database.chunks)
+				chunk.force();
+			return database;
+		}
+
+	}
+
+	/**
+	 * Solve all positions, fewest stones first and highest potential first.
+	 */
+	private void solveAll(int threads) {
+
+		long[][][] sides = getSides(maxStones);
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+		try {
+			for (int stones = 0; stones <= maxStones; stones++)
+				for (int potential = 5 * stones; potential >= 0; potential--) {
+
+					// Split the positions by how their stones and potential are divided between the sides
+					List<int[]> tasks = new ArrayList<>();
+					for (int moverStones = 0; moverStones <= stones; moverStones++)
+						for (int moverPotential = 0; moverPotential <= Math.min(potential, 5 * moverStones); moverPotential++)
+							if (potential - moverPotential <= 5 * (stones - moverStones))
+								tasks.add(new int[] { moverStones, moverPotential });
+					int stonesTotal = stones;
+					int potentialTotal = potential;
+					pool.submit(() -> tasks.parallelStream().forEach(task -> solve(sides[task[0]][task[1]],
+							sides[stonesTotal - task[0]][potentialTotal - task[1]]))).get();
+
+				}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Generation was interrupted");
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Generation failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+	}
+
+	/**
+	 * Solve every position made of one mover side and one opponent side from the
+	 * given lists.
+	 */
+	private void solve(long[] moverSides, long[] opponentSides) {
+		MancalaArrayState state = new MancalaArrayState();
+		for (long moverSide : moverSides)
+			for (long opponentSide : opponentSides) {
+
+				// Player A is always the mover, the Mancalas count only what is won from here
+				state.setPlayerTurn(Player.A);
+				state.setPitCount(MancalaArrayState.MANCALA_A, 0);
+				state.setPitCount(MancalaArrayState.MANCALA_B, 0);
+				for (int i = 0; i < 6; i++) {
+					state.setPitCount(Pit.A1.ordinal() + i, (int) (moverSide >>> (8 * i)) & 0xFF);
+					state.setPitCount(Pit.B1.ordinal() + i, (int) (opponentSide >>> (8 * i)) & 0xFF);
+				}
+				long index = getIndex(state);
+
+				// The game is already over
+				if (state.isEitherSideEmpty()) {
+					put(index, state.getStonesOnSide(Player.A) - state.getStonesOnSide(Player.B));
+					continue;
+				}
+
+				// Every move leads to a solved position
+				int best = Integer.MIN_VALUE;
+				for (int pit = Pit.A1.ordinal(); pit <= Pit.A6.ordinal(); pit++)
+					if (state.getPitCount(pit) > 0) {
+						long undo = state.makeMove(pit);
+						best = Math.max(best, getScore(state));
+						state.unmakeMove(undo);
+					}
+				put(index, best);
+
+			}
+	}
+
+	/**
+	 * List every way to place up to maxStones stones on the six pits of a side,
+	 * grouped by the number of stones and the potential. Each side is packed with
+	 * one byte per pit.
+	 */
+	private static long[][][] getSides(int maxStones) {
+		long[][][] sides = new long[maxStones + 1][][];
+		int[][] sizes = new int[maxStones + 1][];
+		for (int stones = 0; stones <= maxStones; stones++) {
+			sides[stones] = new long[5 * stones + 1][];
+			sizes[stones] = new int[5 * stones + 1];
+		}
+
+		// Count first, then fill
+		addSides(sides, sizes, maxStones, 0, 0, 0, 0);
+		for (int stones = 0; stones <= maxStones; stones++)
+			for (int potential = 0; potential <= 5 * stones; potential++) {
+				sides[stones][potential] = new long[sizes[stones][potential]];
+				sizes[stones][potential] = 0;
+			}
+		addSides(sides, sizes, maxStones, 0, 0, 0, 0);
+		return sides;
+	}
+
+	private static void addSides(long[][][] sides, int[][] sizes, int maxStones, int pit, int stones, int potential,
+			long side) {
+		if (pit == 6) {
+			if (sides[stones][potential] != null)
+				sides[stones][potential][sizes[stones][potential]] = side;
+			sizes[stones][potential]++;
+			return;
+		}
+		for (int count = 0; stones + count <= maxStones; count++)
+			addSides(sides, sizes, maxStones, pit + 1, stones + count, potential + pit * count,
+					side | ((long) count << (8 * pit)));
+	}
+
+	/**
+	 * Generates an endgame database file.
+	 *
+	 * @param args
+	 *            the file name, the most stones left on the small pits, and the
+	 *            number of threads, all optional.
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		File file = new File(args.length > 0 ? args[0] : DEFAULT_FILE);
+		int maxStones = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_STONES;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long start = System.nanoTime();
+		generate(file, maxStones, threads);
+		System.out.printf("Solved %d positions with up to %d stones in %.1f s on %d threads, written to %s.%n",
+				getEntryCount(maxStones), maxStones, (System.nanoTime() - start) / 1e9, threads, file);
+	}
+
+}
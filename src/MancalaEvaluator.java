@@ -0,0 +1,105 @@
+/**
+ * Scores a position where the Mancala AI stops looking ahead. Scores are always
+ * from player A's point of view: higher is better for player A.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public interface MancalaEvaluator {
+
+	/**
+	 * The built-in evaluators, each measuring one feature of the position. They
+	 * read the pit counts and side totals that MancalaArrayState keeps up to date
+	 * while moves are made and unmade, so none of them allocate.
+	 */
+	enum Feature implements MancalaEvaluator {
+
+		// Stones already won, the score the game is decided by
+		STORE_DIFFERENCE {
+			@Override
+			public int evaluate(MancalaArrayState state) {
+				return state.getPitCount(MancalaArrayState.MANCALA_A) - state.getPitCount(MancalaArrayState.MANCALA_B);
+			}
+		},
+
+		// Stones in play on each side, which each player keeps if the other side runs out first
+		MATERIAL {
+			@Override
+			public int evaluate(MancalaArrayState state) {
+				return state.getStonesOnSide(Player.A) - state.getStonesOnSide(Player.B);
+			}
+		},
+
+		// Moves whose last stone lands in the player's own Mancala, earning an extra turn
+		MOBILITY {
+			@Override
+			public int evaluate(MancalaArrayState state) {
+				return getExtraTurns(state, Player.A) - getExtraTurns(state, Player.B);
+			}
+		},
+
+		// The biggest capture each player could make with one move
+		CAPTURE_POTENTIAL {
+			@Override
+			public int evaluate(MancalaArrayState state) {
+				return getBestCapture(state, Player.A) - getBestCapture(state, Player.B);
+			}
+		};
+
+		/**
+		 * Count the pits of a player that would end in the player's Mancala. Going
+		 * once around the board takes 13 stones, the opponent's Mancala is skipped.
+		 */
+		private static int getExtraTurns(MancalaArrayState state, Player player) {
+			int firstPit = MancalaArrayState.getFirstPit(player);
+			int extraTurns = 0;
+			for (int i = 0; i < 6; i++) {
+				int stones = state.getPitCount(firstPit + i);
+				if (stones >= 6 - i && (stones - (6 - i)) % 13 == 0)
+					extraTurns++;
+			}
+			return extraTurns;
+		}
+
+		/**
+		 * Find the most stones a player could capture with one move that stays on
+		 * the player's side.
+		 */
+		private static int getBestCapture(MancalaArrayState state, Player player) {
+			int firstPit = MancalaArrayState.getFirstPit(player);
+			int best = 0;
+			for (int i = 0; i < 6; i++) {
+				int pitLast = i + state.getPitCount(firstPit + i);
+				if (pitLast == i || pitLast > 5 || state.getPitCount(firstPit + pitLast) != 0)
+					continue;
+				int captured = state.getPitCount(MancalaArrayState.getOppositePit(firstPit + pitLast));
+				if (captured > 0)
+					best = Math.max(best, 1 + captured);
+			}
+			return best;
+		}
+
+	}
+
+	/**
+	 * Score a position.
+	 *
+	 * @param state
+	 *            the position, after the last move was made but before the
+	 *            remaining stones are swept into the Mancalas.
+	 * @return the score from player A's point of view
+	 */
+	public int evaluate(MancalaArrayState state);
+
+	/**
+	 * Get what one stone in a Mancala is worth in this evaluator's scores, so
+	 * that exact results, like those of the endgame database, can be scaled to
+	 * match.
+	 *
+	 * @return the score of one stone
+	 */
+	public default int getStoneValue() {
+		return 1;
+	}
+
+}
@@ -13,7 +13,6 @@ public class MancalaGameState {
 	private EnumMap<Pit, LinkedList<Stone>> pitMap;
 	private Player playerTurn;
 	private boolean isGameOver;
-	private MancalaGameState previousState;
 	private Map<Stone, Pit> stoneMap;
 	private Queue<Tuple<Stone>> stoneSequence;
 	private int initStones;
@@ -27,7 +26,6 @@ public class MancalaGameState {
 			pitMap.put(pit, new LinkedList<>());
 		playerTurn = Player.A;
 		isGameOver = false;
-		previousState = null;
 		stoneMap = new HashMap<>();
 		stoneSequence = new LinkedList<>();
 		finiteState = 0;
@@ -45,13 +43,22 @@ public class MancalaGameState {
 		}
 		playerTurn = state.playerTurn;
 		isGameOver = state.isGameOver;
-		if (state.previousState != null)
-			previousState = new MancalaGameState(state.previousState);
 		stoneSequence = new LinkedList<>(state.stoneSequence);
 		initStones = state.initStones;
 		finiteState = state.finiteState;
 	}
 
+	// Converts from the stone counts of an array state, creating new stones
+	public MancalaGameState(MancalaArrayState state) {
+		this();
+		for (Pit pit : Pit.values())
+			for (int i = 0; i < state.getPitCount(pit); i++)
+				offerStone(new Stone(), pit);
+		playerTurn = state.getPlayerTurn();
+		isGameOver = state.isGameOver();
+		initStones = state.getInitStones();
+	}
+
 	// Getters and setters
 
 	public boolean isGameOver() {
@@ -82,14 +89,6 @@ public class MancalaGameState {
 		return stoneSequence;
 	}
 
-	public MancalaGameState getPreviousState() {
-		return previousState;
-	}
-
-	public void savePreviousState() {
-		previousState = new MancalaGameState(this);
-	}
-
 	public int getInitStones() {
 		return initStones;
 	}
@@ -0,0 +1,117 @@
+/**
+ * Keeps the moves of a game so they can be undone and redone. Each move is
+ * stored as the small undo record of MancalaArrayState.makeMove() in a ring
+ * buffer of fixed size, so undo and redo take the same time at any point of the
+ * game, and the oldest moves are forgotten once the buffer is full.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public class MancalaHistory {
+
+	// Instance variables
+	private long[] moves; // undo records, oldest first starting at index first
+	private int first;
+	private int undoCount; // moves that can be undone
+	private int redoCount; // moves after those that can be redone
+	private long sweep; // how the game ended, if the last move ended it
+	private MancalaArrayState position;
+
+	// Constructor
+	public MancalaHistory(int capacity) {
+		moves = new long[Math.max(1, capacity)];
+		position = new MancalaArrayState();
+	}
+
+	// Getters
+
+	public int getCapacity() {
+		return moves.length;
+	}
+
+	public boolean canUndo() {
+		return undoCount > 0;
+	}
+
+	public boolean canRedo() {
+		return redoCount > 0;
+	}
+
+	/**
+	 * Get the position after the moves that have not been undone. It must not be
+	 * modified.
+	 *
+	 * @return the current position
+	 */
+	public MancalaArrayState getPosition() {
+		return position;
+	}
+
+	/**
+	 * Forget all moves and start again from a position.
+	 *
+	 * @param state
+	 *            the starting position. It is copied.
+	 */
+	public void reset(MancalaArrayState state) {
+		position = new MancalaArrayState(state);
+		first = 0;
+		undoCount = 0;
+		redoCount = 0;
+		sweep = 0;
+	}
+
+	/**
+	 * Record a move made in the game. Moves that were undone can no longer be
+	 * redone.
+	 *
+	 * @param pit
+	 *            the pit that was sowed
+	 */
+	public void play(Pit pit) {
+
+		// Drop the oldest move if the buffer is full
+		if (undoCount == moves.length) {
+			first = (first + 1) % moves.length;
+			undoCount--;
+		}
+		moves[(first + undoCount) % moves.length] = position.makeMove(pit.ordinal());
+		sweep = position.makeSweep();
+		undoCount++;
+		redoCount = 0;
+
+	}
+
+	/**
+	 * Take back the last move.
+	 *
+	 * @return whether there was a move to take back
+	 */
+	public boolean undo() {
+		if (undoCount == 0)
+			return false;
+		if (position.isGameOver())
+			position.unmakeSweep(sweep);
+		undoCount--;
+		redoCount++;
+		position.unmakeMove(moves[(first + undoCount) % moves.length]);
+		return true;
+	}
+
+	/**
+	 * Play the last move taken back again.
+	 *
+	 * @return whether there was a move to play again
+	 */
+	public boolean redo() {
+		if (redoCount == 0)
+			return false;
+		int index = (first + undoCount) % moves.length;
+		moves[index] = position.makeMove(MancalaArrayState.getUndoPit(moves[index]));
+		sweep = position.makeSweep();
+		undoCount++;
+		redoCount--;
+		return true;
+	}
+
+}
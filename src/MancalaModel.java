@@ -1,6 +1,7 @@
 import java.io.*;
 import java.nio.charset.*;
 import java.util.*;
+import java.util.function.*;
 import javax.swing.tree.*;
 
 /**
@@ -11,12 +12,23 @@ import javax.swing.tree.*;
  */
 public class MancalaModel {
 
+	// Constants
+	private static final int TABLE_MEGABYTES = 32;
+	private static final int HISTORY_MOVES = 1024;
+	public static final MancalaSearchEngine.Driver DEFAULT_DRIVER = MancalaSearchEngine.Driver.MTDF;
+
 	// Instance variables
 	private MancalaGameState state;
 	private DefaultMutableTreeNode root;
 	private DefaultTreeModel gameTree; // Game tree that stores all possible moves.
 	private int gameCounter;
 	private PrintWriter out;
+	private MancalaSearchEngine engine;
+	private MancalaParallelSearch parallelSearch;
+	private MancalaHistory history;
+	private MancalaOpeningBook openingBook; // null if there is no book
+	private MancalaMonteCarloSearch monteCarloSearch;
+	private MancalaSearchStats stats;
 
 	// Constructor
 	public MancalaModel() {
@@ -24,10 +36,41 @@ public class MancalaModel {
 		root = new DefaultMutableTreeNode(state);
 		gameTree = new DefaultTreeModel(root);
 		gameCounter = 0;
+		engine = new MancalaSearchEngine(
+				new MancalaTranspositionTable(TABLE_MEGABYTES, MancalaTranspositionTable.Replacement.DEPTH_PREFERRED));
+		parallelSearch = new MancalaParallelSearch(Runtime.getRuntime().availableProcessors(),
+				MancalaParallelSearch.Mode.LAZY_SMP, engine.getTranspositionTable());
+		engine.setEvaluator(new MancalaWeightedEvaluator());
+		parallelSearch.setEvaluator(engine.getEvaluator());
+		setDriver(DEFAULT_DRIVER);
+		history = new MancalaHistory(HISTORY_MOVES);
+		monteCarloSearch = new MancalaMonteCarloSearch(Runtime.getRuntime().availableProcessors());
+		stats = new MancalaSearchStats();
+		stats.register();
 
 		out = new PrintWriter(new BufferedWriter(
 				new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), 512));
 
+		// Answer the first moves from the opening book if it was built
+		File bookFile = new File(MancalaOpeningBook.DEFAULT_FILE);
+		if (bookFile.exists())
+			try {
+				openingBook = new MancalaOpeningBook(bookFile);
+			} catch (IOException e) {
+				System.out.println("Unable to read " + bookFile);
+				e.printStackTrace();
+			}
+
+		// Play endgames perfectly if the database was generated
+		File endgameFile = new File(MancalaEndgameDatabase.DEFAULT_FILE);
+		if (endgameFile.exists())
+			try {
+				setEndgameDatabase(new MancalaEndgameDatabase(endgameFile));
+			} catch (IOException e) {
+				System.out.println("Unable to read " + endgameFile);
+				e.printStackTrace();
+			}
+
 	}
 
 	// Getters and Setters
@@ -40,8 +83,147 @@ public class MancalaModel {
 		this.state = state;
 	}
 
-	public MancalaGameState getPreviousState() {
-		return state.getPreviousState();
+	/**
+	 * Set where the AI reports what it searched.
+	 * 
+	 * @param out
+	 */
+	public void setOutput(PrintWriter out) {
+		this.out = out;
+	}
+
+	public MancalaHistory getHistory() {
+		return history;
+	}
+
+	public boolean canUndo() {
+		return history.canUndo();
+	}
+
+	public boolean canRedo() {
+		return history.canRedo();
+	}
+
+	public MancalaSearchEngine getEngine() {
+		return engine;
+	}
+
+	public MancalaParallelSearch getParallelSearch() {
+		return parallelSearch;
+	}
+
+	public MancalaMonteCarloSearch getMonteCarloSearch() {
+		return monteCarloSearch;
+	}
+
+	public MancalaSearchStats getStats() {
+		return stats;
+	}
+
+	public MancalaOpeningBook getOpeningBook() {
+		return openingBook;
+	}
+
+	public void setOpeningBook(MancalaOpeningBook openingBook) {
+		this.openingBook = openingBook;
+	}
+
+	/**
+	 * Let the AI look up positions with few stones left in an endgame database.
+	 * 
+	 * @param endgameDatabase
+	 *            the database, or null to search without one
+	 */
+	public void setEndgameDatabase(MancalaEndgameDatabase endgameDatabase) {
+		engine.setEndgameDatabase(endgameDatabase);
+		parallelSearch.setEndgameDatabase(endgameDatabase);
+	}
+
+	/**
+	 * Set how the AI scores positions where it stops looking ahead. The
+	 * transposition table is cleared, its scores were made by the old evaluator.
+	 * 
+	 * @param evaluator
+	 */
+	public void setEvaluator(MancalaEvaluator evaluator) {
+		engine.setEvaluator(evaluator);
+		parallelSearch.setEvaluator(evaluator);
+		engine.getTranspositionTable().clear();
+	}
+
+	/**
+	 * Set how the AI sets its search windows. The drivers find the same scores,
+	 * MTD(f) and principal variation search with fewer nodes.
+	 * 
+	 * @param driver
+	 */
+	public void setDriver(MancalaSearchEngine.Driver driver) {
+		engine.setDriver(driver);
+		parallelSearch.setDriver(driver);
+	}
+
+	/**
+	 * Set how many threads the timed search uses and how they share the work.
+	 * With one thread the search is deterministic.
+	 * 
+	 * @param threads
+	 * @param mode
+	 */
+	public void setThreads(int threads, MancalaParallelSearch.Mode mode) {
+		parallelSearch.shutdown();
+		parallelSearch = new MancalaParallelSearch(threads, mode, engine.getTranspositionTable());
+		parallelSearch.setEndgameDatabase(engine.getEndgameDatabase());
+		parallelSearch.setEvaluator(engine.getEvaluator());
+		parallelSearch.setDriver(engine.getDriver());
+	}
+
+	/**
+	 * Set up a new game and forget the moves of the previous one.
+	 * 
+	 * @param initStones
+	 *            initial stones per pit to start with
+	 */
+	public void newGame(int initStones) {
+		state.setupGame(initStones);
+		history.reset(new MancalaArrayState(state));
+		monteCarloSearch.clear();
+	}
+
+	/**
+	 * Sow a pit for the current player and remember the move, so it can be undone.
+	 * 
+	 * @param pit
+	 *            the pit to sow from
+	 */
+	public void play(Pit pit) {
+		state.sow(pit);
+		state.checkIfGameEnded();
+		history.play(pit);
+	}
+
+	/**
+	 * Take back the last move. The stones are created anew from the stone counts
+	 * of the earlier position.
+	 * 
+	 * @return whether there was a move to take back
+	 */
+	public boolean undo() {
+		if (!history.undo())
+			return false;
+		state = new MancalaGameState(history.getPosition());
+		return true;
+	}
+
+	/**
+	 * Play the last move taken back again.
+	 * 
+	 * @return whether there was a move to play again
+	 */
+	public boolean redo() {
+		if (!history.redo())
+			return false;
+		state = new MancalaGameState(history.getPosition());
+		return true;
 	}
 
 	// /**
@@ -143,33 +325,208 @@ public class MancalaModel {
 		if (state.isGameOver())
 			return null;
 
+		// The opening was already searched offline
+		Pit bookMove = getBookMove(new MancalaArrayState(state));
+		if (bookMove != null)
+			return bookMove;
+
 		// Current player is the maximizer
 		Player maximizer = state.getPlayerTurn();
 
 		Pair<Pit, Integer> bestMove = new Pair<>(null, Integer.MIN_VALUE);
 		Pair<Pit, Integer> move;
-		int totalGames = 0;
 
-		// Go through sowable pits
-		out.printf("%nIt's Player %s's turn.%n", state.getPlayerTurn());
+		// Search on stone counts only, the stone identities are not needed
+		MancalaArrayState arrayState = new MancalaArrayState(state);
+
+		// Go through sowable pits, reporting only once the search is done
+		MancalaSearchStats.Measurement measurement = stats.begin("minimax", null);
+		gameCounter = 0;
 		for (Pit pit : state.getSowablePits()) {
-			out.printf("Analyzing first move of %s...", pit);
-			out.flush();
-			move = minimax(new MancalaGameState(state), pit, maximizer, depth);
+			move = minimax(new MancalaArrayState(arrayState), pit, maximizer, depth);
 			if (move.y > bestMove.y)
 				bestMove = new Pair<>(pit, move.y);
-			out.printf("done. (%d games searched)%n", gameCounter);
-			out.flush();
-			totalGames += gameCounter;
-			gameCounter = 0;
 		}
-		out.printf("Total games analyzed: %d%n", totalGames);
+		stats.end(measurement, bestMove, depth, gameCounter, 0, 1);
+		out.printf("%nIt's Player %s's turn.%n", state.getPlayerTurn());
+		out.printf("Best move is %s with score %d. (%d games searched)%n", bestMove.x, bestMove.y, gameCounter);
+		out.printf("Search: %s%n", stats);
 		out.flush();
 
 		return bestMove.x;
 
 	}
 
+	/**
+	 * Alpha-beta pruning to calculate the best move. With the store difference
+	 * evaluator it finds the same score as minimax for the same depth, and with
+	 * the alpha-beta or PVS driver also the same move, but searches far fewer
+	 * games.
+	 * 
+	 * @param depth
+	 *            how much moves the AI can look ahead.
+	 * @return the best move after looking ahead the number of moves (depth)
+	 */
+	public Pit alphaBeta(int depth) {
+
+		// Check if game has ended
+		if (state.isGameOver())
+			return null;
+
+		Pit bookMove = getBookMove(new MancalaArrayState(state));
+		if (bookMove != null)
+			return bookMove;
+
+		MancalaSearchStats.Measurement measurement = stats.begin("alphaBeta", engine.getTranspositionTable());
+		Pair<Pit, Integer> bestMove = engine.search(new MancalaArrayState(state), depth);
+		stats.end(measurement, bestMove, engine.getDepthReached(), engine.getNodeCount(), engine.getPrunedCount(), 1);
+		out.printf("%nIt's Player %s's turn.%n", state.getPlayerTurn());
+		out.printf("Best move is %s with score %d. (%d games searched, %d moves pruned, %.1f%% first move cutoffs)%n",
+				bestMove.x, bestMove.y, engine.getNodeCount(), engine.getPrunedCount(),
+				100 * engine.getFirstMoveCutoffRate());
+		out.printf("Transposition table: %s%n", engine.getTranspositionTable());
+		out.printf("Search: %s%n", stats);
+		out.flush();
+
+		return bestMove.x;
+
+	}
+
+	/**
+	 * Iterative deepening to calculate the best move within a time budget.
+	 * 
+	 * @param budgetMillis
+	 *            how long the AI can think, in milliseconds.
+	 * @return the best move of the deepest search that finished in time
+	 */
+	public Pit iterativeDeepening(long budgetMillis) {
+		return iterativeDeepening(new MancalaArrayState(state), budgetMillis);
+	}
+
+	/**
+	 * Iterative deepening on a snapshot of the game, so that it can run on another
+	 * thread while the game goes on.
+	 * 
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param budgetMillis
+	 *            how long the AI can think, in milliseconds.
+	 * @return the best move of the deepest search that finished in time
+	 */
+	public Pit iterativeDeepening(MancalaArrayState state, long budgetMillis) {
+		return iterativeDeepening(state, budgetMillis, () -> false);
+	}
+
+	/**
+	 * Iterative deepening on a snapshot of the game, that gives up once the
+	 * condition holds.
+	 * 
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param budgetMillis
+	 *            how long the AI can think, in milliseconds.
+	 * @param stopCondition
+	 *            makes the search give up once it is true, even if it became true
+	 *            before the search started.
+	 * @return the best move of the deepest search that finished in time, or null
+	 *         if it was stopped first
+	 */
+	public Pit iterativeDeepening(MancalaArrayState state, long budgetMillis, BooleanSupplier stopCondition) {
+
+		// Check if game has ended
+		if (state.isGameOver())
+			return null;
+
+		Pit bookMove = getBookMove(state);
+		if (bookMove != null)
+			return bookMove;
+
+		MancalaSearchStats.Measurement measurement = stats.begin("iterativeDeepening",
+				parallelSearch.getTranspositionTable());
+		Pair<Pit, Integer> bestMove = parallelSearch.searchTimed(state, budgetMillis, stopCondition);
+		stats.end(measurement, bestMove, parallelSearch.getDepthReached(), parallelSearch.getNodeCount(),
+				parallelSearch.getPrunedCount(), parallelSearch.getThreads());
+		out.printf("%nIt's Player %s's turn.%n", state.getPlayerTurn());
+		out.printf(
+				"Best move is %s with score %d at depth %d. (%d games searched on %d threads, %d moves pruned, %.1f%% first move cutoffs)%n",
+				bestMove.x, bestMove.y, parallelSearch.getDepthReached(), parallelSearch.getNodeCount(),
+				parallelSearch.getThreads(), parallelSearch.getPrunedCount(),
+				100 * parallelSearch.getFirstMoveCutoffRate());
+		out.printf("Transposition table: %s%n", engine.getTranspositionTable());
+		out.printf("Search: %s%n", stats);
+		out.flush();
+
+		return bestMove.x;
+
+	}
+
+	/**
+	 * Monte Carlo tree search on a snapshot of the game, so that it can run on
+	 * another thread while the game goes on. The tree is kept for the next move.
+	 * 
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param budgetMillis
+	 *            how long the AI can think, in milliseconds.
+	 * @return the move that was played out most often
+	 */
+	public Pit monteCarlo(MancalaArrayState state, long budgetMillis) {
+		return monteCarlo(state, budgetMillis, () -> false);
+	}
+
+	/**
+	 * Monte Carlo tree search on a snapshot of the game, that gives up once the
+	 * condition holds.
+	 * 
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param budgetMillis
+	 *            how long the AI can think, in milliseconds.
+	 * @param stopCondition
+	 *            makes the search give up once it is true, even if it became true
+	 *            before the search started.
+	 * @return the move that was played out most often
+	 */
+	public Pit monteCarlo(MancalaArrayState state, long budgetMillis, BooleanSupplier stopCondition) {
+
+		// Check if game has ended
+		if (state.isGameOver())
+			return null;
+
+		MancalaSearchStats.Measurement measurement = stats.begin("monteCarlo", null);
+		Pair<Pit, Integer> bestMove = monteCarloSearch.search(state, Long.MAX_VALUE, budgetMillis, stopCondition);
+		stats.end(measurement, bestMove, 0, monteCarloSearch.getIterationCount(), 0, monteCarloSearch.getThreads());
+		out.printf("%nIt's Player %s's turn.%n", state.getPlayerTurn());
+		out.printf("Best move is %s, winning %d%% of %d playouts on %d threads (%d kept from earlier moves).%n",
+				bestMove.x, bestMove.y, monteCarloSearch.getIterationCount(), monteCarloSearch.getThreads(),
+				monteCarloSearch.getReusedCount());
+		out.flush();
+
+		return bestMove.x;
+
+	}
+
+	/**
+	 * Look the position up in the opening book.
+	 * 
+	 * @param state
+	 *            the position, with the current player to move
+	 * @return the book move, or null if there is no book or the position is not
+	 *         in it
+	 */
+	private Pit getBookMove(MancalaArrayState state) {
+		if (openingBook == null)
+			return null;
+		Pair<Pit, Integer> bookMove = openingBook.probe(state);
+		if (bookMove == null)
+			return null;
+		out.printf("%nIt's Player %s's turn.%n", state.getPlayerTurn());
+		out.printf("Best move is %s with score %d, from the opening book.%n", bookMove.x, bookMove.y);
+		out.printf("Opening book: %s%n", openingBook);
+		out.flush();
+		return bookMove.x;
+	}
+
 	/**
 	 * Recursive minimax algorithm to calculate the best move.
 	 * 
@@ -184,14 +541,14 @@ public class MancalaModel {
 	 * @return the best move depending on the current score difference between
 	 *         current player and opponent.
 	 */
-	public Pair<Pit, Integer> minimax(MancalaGameState state, Pit pitMove, Player maximizer, int depth) {
+	public Pair<Pit, Integer> minimax(MancalaArrayState state, Pit pitMove, Player maximizer, int depth) {
 
 		// Make the move
 		state.sow(pitMove);
 
 		// Get necessary values
-		int playerAScore = state.getPitMap().get(Pit.MANCALA_A).size();
-		int playerBScore = state.getPitMap().get(Pit.MANCALA_B).size();
+		int playerAScore = state.getPitCount(MancalaArrayState.MANCALA_A);
+		int playerBScore = state.getPitCount(MancalaArrayState.MANCALA_B);
 		int totalNumberOfStones = state.getInitStones() * 12;
 
 		// Terminating conditions
@@ -213,7 +570,7 @@ public class MancalaModel {
 
 			// Go through sowable pits
 			for (Pit pit : state.getSowablePits()) {
-				move = minimax(new MancalaGameState(state), pit, maximizer, depth - 1);
+				move = minimax(new MancalaArrayState(state), pit, maximizer, depth - 1);
 				if (move.y > bestMove.y)
 					bestMove = new Pair<>(pit, move.y);
 			}
@@ -229,7 +586,7 @@ public class MancalaModel {
 
 			// Go through sowable pits
 			for (Pit pit : state.getSowablePits()) {
-				move = minimax(new MancalaGameState(state), pit, maximizer, depth - 1);
+				move = minimax(new MancalaArrayState(state), pit, maximizer, depth - 1);
 				if (move.y < bestMove.y)
 					bestMove = new Pair<>(pit, move.y);
 			}
@@ -0,0 +1,409 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Monte Carlo tree search (UCT) for the Mancala AI. Instead of looking a fixed
+ * number of moves ahead, it plays many random games from the current position
+ * and grows a tree towards the moves that win most often, so more playouts
+ * simply make it stronger.
+ * <p>
+ * Playouts sow on a scratch MancalaArrayState and allocate nothing. Each thread
+ * grows a tree of its own, and the move is chosen by adding up the visits of the
+ * root moves of all trees. After a move, the part of each tree below the new
+ * position is kept for the next search. The trees together hold at most
+ * MAX_NODES positions, a search ends early once they are full.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public class MancalaMonteCarloSearch {
+
+	// Constants
+	private static final double EXPLORATION = Math.sqrt(2);
+	private static final int REUSE_PLIES = 4; // how far down the old tree the new position is looked for
+	private static final int CLOCK_INTERVAL = 0xFF; // check the clock once every 256 playouts
+	private static final long MAX_NODES = 1 << 21; // positions in all trees together, about 150 MB
+	private static final BooleanSupplier NOT_STOPPED = () -> false;
+
+	// Instance variables
+	private int threads;
+	private ForkJoinPool pool;
+	private Node[] roots; // the tree of each thread, kept between searches
+	private long iterationCount; // playouts in the last search
+	private long reusedCount; // playouts inherited from earlier searches
+	private volatile boolean isStopped;
+	private volatile boolean isClearPending; // whether the next search starts with new trees
+
+	// Constructor
+	public MancalaMonteCarloSearch(int threads) {
+		this.threads = Math.max(1, threads);
+		pool = new ForkJoinPool(this.threads);
+		roots = new Node[this.threads];
+	}
+
+	// Getters
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public long getIterationCount() {
+		return iterationCount;
+	}
+
+	public long getReusedCount() {
+		return reusedCount;
+	}
+
+	/**
+	 * Ask a running search to give up as soon as possible. Safe to call from any
+	 * thread.
+	 */
+	public void stop() {
+		isStopped = true;
+	}
+
+	/**
+	 * Stop the worker threads. The search cannot be used afterwards.
+	 */
+	public void shutdown() {
+		stop();
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Forget the trees of earlier searches. Safe to call from any thread, even
+	 * while a search is running: the trees are dropped when the next search
+	 * starts, so one still running cannot bring them back.
+	 */
+	public void clear() {
+		isClearPending = true;
+	}
+
+	/**
+	 * Search until either budget runs out.
+	 *
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param iterations
+	 *            how many playouts to run on all threads together, or
+	 *            Long.MAX_VALUE for no limit.
+	 * @param budgetMillis
+	 *            how long the search may take, in milliseconds, or Long.MAX_VALUE
+	 *            for no limit.
+	 * @return the most visited move and the percentage of games it won for the
+	 *         current player, or no move if the game has ended
+	 */
+	public Pair<Pit, Integer> search(MancalaArrayState state, long iterations, long budgetMillis) {
+		return search(state, iterations, budgetMillis, NOT_STOPPED);
+	}
+
+	/**
+	 * Search until either budget runs out, the trees are full or the condition
+	 * holds. Unlike stop(), the condition is not cleared when the search starts,
+	 * so a stop that comes just before is not lost.
+	 *
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param iterations
+	 *            how many playouts to run on all threads together, or
+	 *            Long.MAX_VALUE for no limit.
+	 * @param budgetMillis
+	 *            how long the search may take, in milliseconds, or Long.MAX_VALUE
+	 *            for no limit.
+	 * @param stopCondition
+	 *            makes the search give up once it is true
+	 * @return the most visited move and the percentage of games it won for the
+	 *         current player, or no move if the game has ended
+	 */
+	public synchronized Pair<Pit, Integer> search(MancalaArrayState state, long iterations, long budgetMillis,
+			BooleanSupplier stopCondition) {
+
+		iterationCount = 0;
+		reusedCount = 0;
+		isStopped = false;
+		if (isClearPending) {
+			isClearPending = false;
+			Arrays.fill(roots, null);
+		}
+
+		// Check if game has ended
+		if (state.isGameOver() || state.isEitherSideEmpty())
+			return new Pair<>(null, 0);
+
+		// Keep what the trees already know about this position
+		MancalaArrayState root = new MancalaArrayState(state);
+		long hash = root.getHash();
+		for (int i = 0; i < threads; i++) {
+			roots[i] = findNode(roots[i], hash);
+			if (roots[i] == null)
+				roots[i] = new Node(root);
+			reusedCount += roots[i].visits;
+		}
+
+		// Grow every tree on its own thread
+		long deadline = (budgetMillis == Long.MAX_VALUE) ? Long.MAX_VALUE : System.nanoTime() + budgetMillis * 1000000;
+		long iterationsEach = (iterations == Long.MAX_VALUE) ? Long.MAX_VALUE : Math.max(1, iterations / threads);
+		if (threads == 1)
+			iterationCount = grow(roots[0], root, iterationsEach, deadline, stopCondition);
+		else {
+			List<Callable<Long>> tasks = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				Node node = roots[i];
+				tasks.add(() -> grow(node, root, iterationsEach, deadline, stopCondition));
+			}
+			try {
+				for (Future<Long> result : pool.invokeAll(tasks))
+					iterationCount += result.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Playout task failed", e.getCause());
+			}
+		}
+
+		// Pick the move visited most often over all trees
+		int pitBest = -1;
+		long visitsBest = -1;
+		double winsBest = 0;
+		for (int pit = 0; pit < 6; pit++) {
+			long visits = 0;
+			double wins = 0;
+			for (Node node : roots)
+				if (node.children != null && node.children[pit] != null) {
+					visits += node.children[pit].visits;
+					wins += node.children[pit].wins;
+				}
+			if (root.isSowable(MancalaArrayState.getFirstPit(root.getPlayerTurn()) + pit) && visits > visitsBest) {
+				pitBest = pit;
+				visitsBest = visits;
+				winsBest = wins;
+			}
+		}
+
+		// Report the win rate from the current player's point of view
+		double winRate = visitsBest > 0 ? winsBest / visitsBest : 0.5;
+		if (root.getPlayerTurn() == Player.B)
+			winRate = 1 - winRate;
+		return new Pair<>(Pit.values()[MancalaArrayState.getFirstPit(root.getPlayerTurn()) + pitBest],
+				(int) Math.round(100 * winRate));
+
+	}
+
+	/**
+	 * Look for a position a few moves below the root of an old tree.
+	 *
+	 * @return the node of the position, or null if it is not in the tree
+	 */
+	private static Node findNode(Node root, long hash) {
+		List<Node> level = new ArrayList<>();
+		if (root != null)
+			level.add(root);
+		for (int ply = 0; ply <= REUSE_PLIES && !level.isEmpty(); ply++) {
+			List<Node> next = new ArrayList<>();
+			for (Node node : level) {
+				if (node.hash == hash)
+					return node;
+				if (node.children != null)
+					for (Node child : node.children)
+						if (child != null)
+							next.add(child);
+			}
+			level = next;
+		}
+		return null;
+	}
+
+	/**
+	 * Count the positions in a tree.
+	 */
+	private static long countNodes(Node root) {
+		long count = 0;
+		Deque<Node> nodes = new ArrayDeque<>();
+		nodes.push(root);
+		while (!nodes.isEmpty()) {
+			Node node = nodes.pop();
+			count++;
+			if (node.children != null)
+				for (Node child : node.children)
+					if (child != null)
+						nodes.push(child);
+		}
+		return count;
+	}
+
+	/**
+	 * Run playouts on one tree, until it holds its share of MAX_NODES.
+	 *
+	 * @return how many playouts were run
+	 */
+	private long grow(Node root, MancalaArrayState rootState, long iterations, long deadline,
+			BooleanSupplier stopCondition) {
+
+		MancalaArrayState state = new MancalaArrayState();
+		Node[] path = new Node[64];
+		SplittableRandom rand = new SplittableRandom();
+		long iteration = 0;
+		long nodes = countNodes(root);
+		long maxNodes = MAX_NODES / threads;
+		while (iteration < iterations && nodes < maxNodes) {
+
+			// Select a path down the tree, expanding one new node at its end
+			state.copyFrom(rootState);
+			Node node = root;
+			int length = 0;
+			path[length++] = node;
+			while (!node.isTerminal) {
+				int pit = node.getUntriedPit(rand);
+				boolean isNew = pit >= 0;
+				if (!isNew)
+					pit = node.getBestChild();
+				state.makeMove(MancalaArrayState.getFirstPit(state.getPlayerTurn()) + pit);
+				if (isNew) {
+					node.addChild(pit, new Node(state));
+					nodes++;
+				}
+				node = node.children[pit];
+				if (length == path.length)
+					path = Arrays.copyOf(path, 2 * length);
+				path[length++] = node;
+				if (isNew)
+					break;
+			}
+
+			// Play randomly to the end and count the result for every node on the path
+			double reward = playout(state, rand);
+			for (int i = 0; i < length; i++) {
+				path[i].visits++;
+				path[i].wins += reward;
+			}
+
+			if ((++iteration & CLOCK_INTERVAL) == 0 && (isStopped || stopCondition.getAsBoolean()
+					|| System.nanoTime() > deadline))
+				break;
+		}
+		return iteration;
+
+	}
+
+	/**
+	 * Play random moves until the game is decided.
+	 *
+	 * @return 1 if player A wins, 0 if player B wins, 0.5 for a draw
+	 */
+	private static double playout(MancalaArrayState state, SplittableRandom rand) {
+		int half = state.getInitStones() * 6;
+		while (!state.isEitherSideEmpty() && state.getPitCount(MancalaArrayState.MANCALA_A) <= half
+				&& state.getPitCount(MancalaArrayState.MANCALA_B) <= half) {
+
+			// Pick one of the sowable pits at random
+			int firstPit = MancalaArrayState.getFirstPit(state.getPlayerTurn());
+			int sowable = 0;
+			for (int pit = firstPit; pit < firstPit + 6; pit++)
+				if (state.getPitCount(pit) > 0)
+					sowable++;
+			int choice = rand.nextInt(sowable);
+			for (int pit = firstPit;; pit++)
+				if (state.getPitCount(pit) > 0 && choice-- == 0) {
+					state.sow(pit);
+					break;
+				}
+
+		}
+		return getReward(state);
+	}
+
+	/**
+	 * Score a decided game, counting the stones each side would sweep.
+	 */
+	private static double getReward(MancalaArrayState state) {
+		int scoreA = state.getPitCount(MancalaArrayState.MANCALA_A);
+		int scoreB = state.getPitCount(MancalaArrayState.MANCALA_B);
+		if (state.isEitherSideEmpty()) {
+			scoreA += state.getStonesOnSide(Player.A);
+			scoreB += state.getStonesOnSide(Player.B);
+		}
+		return scoreA > scoreB ? 1 : scoreA < scoreB ? 0 : 0.5;
+	}
+
+	/**
+	 * A position in the tree. Children are indexed by the pit's place on the side
+	 * of the player to move, 0 to 5.
+	 */
+	private static class Node {
+
+		// Instance variables
+		private long hash;
+		private boolean isPlayerA; // whether player A moves from here
+		private boolean isTerminal;
+		private int untried; // bit set of sowable pits without a child yet
+		private Node[] children; // null until the first child is added
+		private long visits;
+		private double wins; // player A's wins, draws count half
+
+		// Constructor
+		private Node(MancalaArrayState state) {
+			hash = state.getHash();
+			isPlayerA = state.getPlayerTurn() == Player.A;
+			int half = state.getInitStones() * 6;
+			isTerminal = state.isEitherSideEmpty() || state.getPitCount(MancalaArrayState.MANCALA_A) > half
+					|| state.getPitCount(MancalaArrayState.MANCALA_B) > half;
+			if (!isTerminal) {
+				int firstPit = MancalaArrayState.getFirstPit(state.getPlayerTurn());
+				for (int pit = 0; pit < 6; pit++)
+					if (state.getPitCount(firstPit + pit) > 0)
+						untried |= 1 << pit;
+			}
+		}
+
+		private void addChild(int pit, Node child) {
+			if (children == null)
+				children = new Node[6];
+			children[pit] = child;
+		}
+
+		/**
+		 * Pick a random sowable pit that has no child yet.
+		 *
+		 * @return the pit's place on the side, or -1 if all were tried
+		 */
+		private int getUntriedPit(SplittableRandom rand) {
+			if (untried == 0)
+				return -1;
+			int choice = rand.nextInt(Integer.bitCount(untried));
+			int pits = untried;
+			for (int i = 0; i < choice; i++)
+				pits &= pits - 1;
+			int pit = Integer.numberOfTrailingZeros(pits);
+			untried &= ~(1 << pit);
+			return pit;
+		}
+
+		/**
+		 * Pick the child with the best upper confidence bound for the player to move.
+		 *
+		 * @return the pit's place on the side
+		 */
+		private int getBestChild() {
+			double logVisits = Math.log(visits);
+			double scoreBest = Double.NEGATIVE_INFINITY;
+			int pitBest = -1;
+			for (int pit = 0; pit < 6; pit++) {
+				Node child = children[pit];
+				if (child == null)
+					continue;
+				double winRate = child.wins / child.visits;
+				double score = (isPlayerA ? winRate : 1 - winRate)
+						+ EXPLORATION * Math.sqrt(logVisits / child.visits);
+				if (score > scoreBest) {
+					scoreBest = score;
+					pitBest = pit;
+				}
+			}
+			return pitBest;
+		}
+
+	}
+
+}
@@ -0,0 +1,271 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Opening book for the Mancala AI. Every game with 3 or 4 stones per pit starts
+ * from the same position, so the first moves are searched deeply once, offline,
+ * and the AI looks its move up here instead of searching again.
+ * <p>
+ * The book is an open-addressing hash table keyed on the Zobrist hash of a
+ * MancalaArrayState. Each slot holds the hash and the best pit, its score and
+ * the depth it was searched to, packed into an int, so a lookup is a few array
+ * reads and the file is 12 bytes per slot.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public class MancalaOpeningBook {
+
+	// Constants
+	public static final String DEFAULT_FILE = "mancala-opening.book";
+	public static final int DEFAULT_PLIES = 4;
+	public static final int DEFAULT_DEPTH = 12;
+	private static final int MAGIC = 0x4D4F424B; // "MOBK"
+	private static final int VALID = 1 << 31;
+	private static final int TABLE_MEGABYTES = 64;
+
+	// Instance variables
+	private long[] keys;
+	private int[] moves;
+	private int mask;
+	private int size;
+	private int plies;
+	private int depth;
+	private LongAdder hits;
+	private LongAdder misses;
+
+	// Constructors
+
+	private MancalaOpeningBook(int entries, int plies, int depth) {
+		int capacity = Integer.highestOneBit(Math.max(1, entries * 2 - 1)) << 1; // at most half full
+		keys = new long[capacity];
+		moves = new int[capacity];
+		mask = capacity - 1;
+		this.plies = plies;
+		this.depth = depth;
+		hits = new LongAdder();
+		misses = new LongAdder();
+	}
+
+	/**
+	 * Read a book file written by build().
+	 *
+	 * @param file
+	 *            the book file
+	 * @throws IOException
+	 *             if the file cannot be read or is not an opening book
+	 */
+	public MancalaOpeningBook(File file) throws IOException {
+		this(0, 0, 0);
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (input.readInt() != MAGIC)
+				throw new IOException(file + " is not a Mancala opening book");
+			int capacity = input.readInt();
+			if (Integer.bitCount(capacity) != 1)
+				throw new IOException(file + " is damaged");
+			size = input.readInt();
+			plies = input.readInt();
+			depth = input.readInt();
+			keys = new long[capacity];
+			moves = new int[capacity];
+			mask = capacity - 1;
+			for (int i = 0; i < capacity; i++) {
+				keys[i] = input.readLong();
+				moves[i] = input.readInt();
+			}
+		}
+	}
+
+	// Getters
+
+	public int size() {
+		return size;
+	}
+
+	public int getPlies() {
+		return plies;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Look up the best move of a position.
+	 *
+	 * @param state
+	 *            the position, with the current player to move
+	 * @return the best move and its score from the current player's point of
+	 *         view, or null if the position is not in the book.
+	 */
+	public Pair<Pit, Integer> probe(MancalaArrayState state) {
+		long hash = state.getHash();
+		for (int index = (int) hash & mask; moves[index] != 0; index = (index + 1) & mask)
+			if (keys[index] == hash) {
+				int pit = moves[index] & 0xF;
+
+				// Never play an illegal move from a book built for other rules
+				if (!state.isSowable(pit))
+					break;
+				hits.increment();
+				return new Pair<>(Pit.values()[pit], (int) (short) (moves[index] >>> 12));
+			}
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * Add a position to the book. The book must have room for it.
+	 */
+	private void put(long hash, Pit pit, int score, int depth) {
+		int index = (int) hash & mask;
+		while (moves[index] != 0 && keys[index] != hash)
+			index = (index + 1) & mask;
+		if (moves[index] == 0)
+			size++;
+		keys[index] = hash;
+		moves[index] = VALID | ((score & 0xFFFF) << 12) | (Math.min(depth, 0xFF) << 4) | pit.ordinal();
+	}
+
+	/**
+	 * Write the book to a file.
+	 *
+	 * @param file
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void save(File file) throws IOException {
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(keys.length);
+			output.writeInt(size);
+			output.writeInt(plies);
+			output.writeInt(depth);
+			for (int i = 0; i < keys.length; i++) {
+				output.writeLong(keys[i]);
+				output.writeInt(moves[i]);
+			}
+		}
+	}
+
+	/**
+	 * Search every position of the first moves of a game deeply and keep the best
+	 * move of each.
+	 *
+	 * @param initStones
+	 *            the setups to cover, in stones per pit
+	 * @param plies
+	 *            how many moves from the start are covered. An extra turn counts
+	 *            as a move.
+	 * @param depth
+	 *            how much moves the AI looks ahead from each position
+	 * @param threads
+	 *            how many positions are searched at once
+	 * @param evaluator
+	 *            how positions are scored, the one the AI plays with so that the
+	 *            book moves and scores match its own
+	 * @param driver
+	 *            how the search windows are set
+	 * @return the book
+	 */
+	public static MancalaOpeningBook build(int[] initStones, int plies, int depth, int threads,
+			MancalaEvaluator evaluator, MancalaSearchEngine.Driver driver) {
+
+		// Collect the positions that can come up, each one once
+		Map<Long, MancalaArrayState> positions = new LinkedHashMap<>();
+		for (int stones : initStones) {
+			MancalaArrayState start = new MancalaArrayState();
+			start.setupGame(stones);
+			List<MancalaArrayState> frontier = Collections.singletonList(start);
+			for (int ply = 0; ply < plies; ply++) {
+				List<MancalaArrayState> next = new ArrayList<>();
+				for (MancalaArrayState state : frontier) {
+					if (positions.putIfAbsent(state.getHash(), state) != null)
+						continue;
+					for (Pit pit : state.getSowablePits()) {
+						MancalaArrayState child = new MancalaArrayState(state);
+						child.sow(pit);
+						if (!child.checkIfGameEnded())
+							next.add(child);
+					}
+				}
+				frontier = next;
+			}
+		}
+
+		// Search them on all threads, with one engine per thread sharing a table
+		MancalaTranspositionTable table = new MancalaTranspositionTable(TABLE_MEGABYTES,
+				MancalaTranspositionTable.Replacement.DEPTH_PREFERRED);
+		ThreadLocal<MancalaSearchEngine> engines = ThreadLocal.withInitial(() -> {
+			MancalaSearchEngine engine = new MancalaSearchEngine(table);
+			engine.setEvaluator(evaluator);
+			engine.setDriver(driver);
+			return engine;
+		});
+		MancalaOpeningBook book = new MancalaOpeningBook(positions.size(), plies, depth);
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+		try {
+			pool.submit(() -> positions.entrySet().parallelStream().forEach(entry -> {
+				Pair<Pit, Integer> bestMove = engines.get().search(entry.getValue(), depth);
+				synchronized (book) {
+					book.put(entry.getKey(), bestMove.x, bestMove.y, depth);
+				}
+			})).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Building the book was interrupted");
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Building the book failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		return book;
+
+	}
+
+	/**
+	 * Produces a summary of the counters.
+	 */
+	@Override
+	public String toString() {
+		long hits = getHits();
+		long probes = hits + getMisses();
+		return String.format("%d positions, %d plies at depth %d, %d hits in %d probes (%.1f%% hit rate)", size, plies,
+				depth, hits, probes, probes == 0 ? 0.0 : 100.0 * hits / probes);
+	}
+
+	/**
+	 * Builds an opening book file for games with 3 and 4 stones per pit, searched
+	 * with the evaluator and driver the game plays with.
+	 *
+	 * @param args
+	 *            the file name, the number of plies, the search depth and the
+	 *            number of threads, all optional.
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		File file = new File(args.length > 0 ? args[0] : DEFAULT_FILE);
+		int plies = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PLIES;
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DEPTH;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		long start = System.nanoTime();
+		MancalaOpeningBook book = build(new int[] { 3, 4 }, plies, depth, threads, new MancalaWeightedEvaluator(),
+				MancalaModel.DEFAULT_DRIVER);
+		book.save(file);
+		System.out.printf("Searched %d positions to depth %d in %.1f s on %d threads, written to %s.%n", book.size(),
+				depth, (System.nanoTime() - start) / 1e9, threads, file);
+	}
+
+}
@@ -0,0 +1,404 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * Runs the Mancala AI search on several threads. Root split searches each move
+ * of the current player as its own task in a ForkJoinPool. Lazy SMP runs the
+ * whole search on every thread at once, with all of them sharing one
+ * transposition table, and plays the move of the main thread. With one thread
+ * both modes do exactly what a single MancalaSearchEngine does.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public class MancalaParallelSearch {
+
+	/**
+	 * How the work is divided between threads.
+	 */
+	public enum Mode {
+		ROOT_SPLIT, LAZY_SMP
+	}
+
+	// Constants
+	private static final int MAX_DEPTH = MancalaSearchEngine.MAX_DEPTH;
+	private static final BooleanSupplier NOT_STOPPED = () -> false;
+
+	// Instance variables
+	private int threads;
+	private Mode mode;
+	private MancalaTranspositionTable table;
+	private MancalaEndgameDatabase endgameDatabase;
+	private MancalaEvaluator evaluator;
+	private MancalaSearchEngine.Driver driver;
+	private ForkJoinPool pool;
+	private MancalaSearchEngine[] engines;
+	private volatile AtomicBoolean isSplitStopped; // stops the engines the root split search under way made for its tasks
+	private long nodeCount;
+	private long prunedCount;
+	private long cutoffCount;
+	private long firstMoveCutoffCount;
+	private int depthReached;
+	private boolean isSplitDepthLimited; // whether any root split task was cut off by depth
+
+	// Constructor
+	public MancalaParallelSearch(int threads, Mode mode, MancalaTranspositionTable table) {
+		this.threads = Math.max(1, threads);
+		this.mode = mode;
+		this.table = table;
+		pool = new ForkJoinPool(this.threads);
+		engines = new MancalaSearchEngine[this.threads];
+		for (int i = 0; i < this.threads; i++)
+			engines[i] = new MancalaSearchEngine(table);
+		evaluator = engines[0].getEvaluator();
+		driver = engines[0].getDriver();
+	}
+
+	// Getters
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public MancalaTranspositionTable getTranspositionTable() {
+		return table;
+	}
+
+	public MancalaEndgameDatabase getEndgameDatabase() {
+		return endgameDatabase;
+	}
+
+	/**
+	 * Let every engine score positions with few stones left from an endgame
+	 * database.
+	 * 
+	 * @param endgameDatabase
+	 *            the database, or null to search without one
+	 */
+	public void setEndgameDatabase(MancalaEndgameDatabase endgameDatabase) {
+		this.endgameDatabase = endgameDatabase;
+		for (MancalaSearchEngine engine : engines)
+			engine.setEndgameDatabase(endgameDatabase);
+	}
+
+	public MancalaEvaluator getEvaluator() {
+		return evaluator;
+	}
+
+	/**
+	 * Set how every engine scores positions where the search stops. The shared
+	 * transposition table still holds scores of the old evaluator, clear it
+	 * afterwards.
+	 * 
+	 * @param evaluator
+	 */
+	public void setEvaluator(MancalaEvaluator evaluator) {
+		this.evaluator = evaluator;
+		for (MancalaSearchEngine engine : engines)
+			engine.setEvaluator(evaluator);
+	}
+
+	public MancalaSearchEngine.Driver getDriver() {
+		return driver;
+	}
+
+	/**
+	 * Set how every engine sets its search windows.
+	 * 
+	 * @param driver
+	 */
+	public void setDriver(MancalaSearchEngine.Driver driver) {
+		this.driver = driver;
+		for (MancalaSearchEngine engine : engines)
+			engine.setDriver(driver);
+	}
+
+	public long getNodeCount() {
+		return nodeCount;
+	}
+
+	public long getPrunedCount() {
+		return prunedCount;
+	}
+
+	/**
+	 * Get how often the first move tried was good enough for a cutoff, out of all
+	 * the cutoffs of the last search on all threads.
+	 *
+	 * @return the rate between 0 and 1, or 0 without any cutoff
+	 */
+	public double getFirstMoveCutoffRate() {
+		return cutoffCount == 0 ? 0 : (double) firstMoveCutoffCount / cutoffCount;
+	}
+
+	public int getDepthReached() {
+		return depthReached;
+	}
+
+	/**
+	 * Ask every running search to give up as soon as possible.
+	 */
+	public void stop() {
+		for (MancalaSearchEngine engine : engines)
+			engine.stop();
+		AtomicBoolean isStopped = isSplitStopped;
+		if (isStopped != null)
+			isStopped.set(true);
+	}
+
+	/**
+	 * Stop the worker threads. The search cannot be used afterwards.
+	 */
+	public void shutdown() {
+		stop();
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Search to a fixed depth.
+	 *
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param depth
+	 *            how much moves the AI can look ahead, same as minimax, from 0 to
+	 *            MancalaSearchEngine.MAX_DEPTH.
+	 * @return the best move and its score from the current player's point of view
+	 * @throws IllegalArgumentException
+	 *             if the depth is out of range, before any thread starts
+	 */
+	public Pair<Pit, Integer> search(MancalaArrayState state, int depth) {
+		if (depth < 0 || depth > MancalaSearchEngine.MAX_DEPTH)
+			throw new IllegalArgumentException(
+					"depth must be between 0 and " + MancalaSearchEngine.MAX_DEPTH + ", not " + depth);
+		if (threads == 1) {
+			Pair<Pit, Integer> bestMove = engines[0].search(state, depth);
+			collectStatistics(1);
+			depthReached = engines[0].getDepthReached();
+			return bestMove;
+		}
+		if (mode == Mode.ROOT_SPLIT) {
+			if (table != null)
+				table.newSearch();
+			AtomicBoolean isStopped = new AtomicBoolean();
+			isSplitStopped = isStopped;
+			Pair<Pit, Integer> bestMove = searchRootSplit(state, depth, Long.MAX_VALUE, isStopped::get);
+			depthReached = depth;
+			return bestMove;
+		}
+		return searchLazySMP(state, main -> main.search(state, depth), NOT_STOPPED);
+	}
+
+	/**
+	 * Iterative deepening within a time budget.
+	 *
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param budgetMillis
+	 *            how long the search may take, in milliseconds.
+	 * @return the best move of the deepest search that completed
+	 */
+	public Pair<Pit, Integer> searchTimed(MancalaArrayState state, long budgetMillis) {
+		return searchTimed(state, budgetMillis, NOT_STOPPED);
+	}
+
+	/**
+	 * Iterative deepening within a time budget, that also gives up once the
+	 * condition holds. Unlike stop(), the condition is not cleared when the search
+	 * starts, so a stop that comes just before is not lost.
+	 *
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param budgetMillis
+	 *            how long the search may take, in milliseconds.
+	 * @param stopCondition
+	 *            makes the search give up once it is true
+	 * @return the best move of the deepest search that completed
+	 */
+	public Pair<Pit, Integer> searchTimed(MancalaArrayState state, long budgetMillis, BooleanSupplier stopCondition) {
+		if (threads == 1) {
+			Pair<Pit, Integer> bestMove = engines[0].searchTimed(state, budgetMillis, stopCondition);
+			collectStatistics(1);
+			depthReached = engines[0].getDepthReached();
+			return bestMove;
+		}
+		if (mode == Mode.LAZY_SMP)
+			return searchLazySMP(state, main -> main.searchTimed(state, budgetMillis, stopCondition), stopCondition);
+
+		// Deepen one move at a time, splitting the root moves at every depth. A stop
+		// holds for all the depths that are left.
+		if (table != null)
+			table.newSearch();
+		AtomicBoolean isStopped = new AtomicBoolean();
+		isSplitStopped = isStopped;
+		long deadline = System.nanoTime() + budgetMillis * 1000000;
+		long nodesTotal = 0;
+		long prunedTotal = 0;
+		long cutoffTotal = 0;
+		long firstMoveCutoffTotal = 0;
+		long nodesBefore = 0;
+		Pair<Pit, Integer> bestMove = new Pair<>(null, 0);
+		depthReached = -1;
+		for (int depth = 0; depth <= MAX_DEPTH && System.nanoTime() < deadline; depth++) {
+			MancalaSearchStats.IterationEvent event = new MancalaSearchStats.IterationEvent();
+			event.begin();
+			Pair<Pit, Integer> move = searchRootSplit(state, depth, depthReached < 0 ? Long.MAX_VALUE : deadline,
+					() -> isStopped.get() || stopCondition.getAsBoolean());
+			MancalaSearchStats.commitIteration(event, depth, nodeCount, depth == 0 ? 0 : nodesBefore, move,
+					move == null);
+			nodesBefore = nodeCount;
+			nodesTotal += nodeCount;
+			prunedTotal += prunedCount;
+			cutoffTotal += cutoffCount;
+			firstMoveCutoffTotal += firstMoveCutoffCount;
+			if (move == null || move.x == null)
+				break;
+			bestMove = move;
+			depthReached = depth;
+
+			// Every line reached the end of the game, searching deeper changes nothing
+			if (!isSplitDepthLimited)
+				break;
+		}
+		nodeCount = nodesTotal;
+		prunedCount = prunedTotal;
+		cutoffCount = cutoffTotal;
+		firstMoveCutoffCount = firstMoveCutoffTotal;
+		return bestMove;
+	}
+
+	/**
+	 * Search every root move as its own task, each with a full window.
+	 *
+	 * @param stopCondition
+	 *            makes the tasks give up once it is true
+	 * @return the best move, or null if the deadline passed or the search was
+	 *         stopped first
+	 */
+	private Pair<Pit, Integer> searchRootSplit(MancalaArrayState state, int depth, long deadline,
+			BooleanSupplier stopCondition) {
+
+		// Check if game has ended
+		nodeCount = 0;
+		prunedCount = 0;
+		cutoffCount = 0;
+		firstMoveCutoffCount = 0;
+		isSplitDepthLimited = false;
+		if (state.isGameOver())
+			return new Pair<>(null, 0);
+
+		// One task per sowable pit, each with an engine of its own
+		List<Pit> moves = new ArrayList<>(state.getSowablePits());
+		List<Callable<long[]>> tasks = new ArrayList<>();
+		for (Pit pit : moves)
+			tasks.add(() -> {
+				MancalaSearchEngine engine = new MancalaSearchEngine(table);
+				engine.setEndgameDatabase(endgameDatabase);
+				engine.setEvaluator(evaluator);
+				engine.setDriver(driver);
+				int score = engine.searchMove(state, pit, depth, deadline, stopCondition);
+				return new long[] { score, engine.isAborted() ? 1 : 0, engine.getNodeCount(),
+						engine.getPrunedCount(), engine.getCutoffCount(), engine.getFirstMoveCutoffCount(),
+						engine.isDepthLimited() ? 1 : 0 };
+			});
+
+		// Reduce in pit order, so the result does not depend on which task finished first
+		boolean isMaximizing = state.getPlayerTurn() == Player.A;
+		Pit pitBest = null;
+		int scoreBest = 0;
+		try {
+			List<Future<long[]>> results = pool.invokeAll(tasks);
+			for (int i = 0; i < moves.size(); i++) {
+				long[] result = results.get(i).get();
+				nodeCount += result[2];
+				prunedCount += result[3];
+				cutoffCount += result[4];
+				firstMoveCutoffCount += result[5];
+				isSplitDepthLimited |= result[6] != 0;
+				if (result[1] != 0)
+					return null;
+				int score = (int) (isMaximizing ? result[0] : -result[0]);
+				if (pitBest == null || score > scoreBest) {
+					pitBest = moves.get(i);
+					scoreBest = score;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Search task failed", e.getCause());
+		}
+
+		return new Pair<>(pitBest, scoreBest);
+
+	}
+
+	/**
+	 * Run the main search on this thread while helpers search the same position
+	 * and fill the shared transposition table.
+	 *
+	 * @param stopCondition
+	 *            makes the helpers give up once it is true
+	 */
+	private Pair<Pit, Integer> searchLazySMP(MancalaArrayState state,
+			Function<MancalaSearchEngine, Pair<Pit, Integer>> mainSearch, BooleanSupplier stopCondition) {
+
+		// Start the helpers
+		List<Future<?>> helpers = new ArrayList<>();
+		for (int i = 1; i < threads; i++) {
+			MancalaSearchEngine helper = engines[i];
+			helper.setHelperIndex(i);
+			helpers.add(pool.submit(() -> helper.searchTimed(state, Long.MAX_VALUE, stopCondition)));
+		}
+
+		// The main search decides the move, then the helpers are no longer needed. A
+		// helper that had not started yet clears its stop flag, so keep asking until
+		// every helper has finished, even if this thread is interrupted meanwhile.
+		Pair<Pit, Integer> bestMove = mainSearch.apply(engines[0]);
+		boolean isInterrupted = false;
+		for (int i = 1; i < threads; i++)
+			while (true) {
+				engines[i].stop();
+				try {
+					helpers.get(i - 1).get(1, TimeUnit.MILLISECONDS);
+					break;
+				} catch (TimeoutException e) {
+					continue;
+				} catch (InterruptedException e) {
+					isInterrupted = true;
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Helper search failed", e.getCause());
+				}
+			}
+		if (isInterrupted)
+			Thread.currentThread().interrupt();
+
+		collectStatistics(threads);
+		depthReached = engines[0].getDepthReached();
+		return bestMove;
+
+	}
+
+	/**
+	 * Add up the counters of the engines that took part.
+	 */
+	private void collectStatistics(int engineCount) {
+		nodeCount = 0;
+		prunedCount = 0;
+		cutoffCount = 0;
+		firstMoveCutoffCount = 0;
+		for (int i = 0; i < engineCount; i++) {
+			nodeCount += engines[i].getNodeCount();
+			prunedCount += engines[i].getPrunedCount();
+			cutoffCount += engines[i].getCutoffCount();
+			firstMoveCutoffCount += engines[i].getFirstMoveCutoffCount();
+		}
+	}
+
+}
@@ -0,0 +1,341 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Counts every legal sequence of moves to a given depth from a position, like
+ * the perft tools of chess engines, and checks the counts against reference
+ * counts stored below. It walks the tree the way the old MancalaModel.dfs()
+ * did, but makes and unmakes moves on a single MancalaArrayState, so it also
+ * measures how fast the rules run.
+ * <p>
+ * Each sowing is one ply, so an extra turn is simply a ply by the same player.
+ * A move that ends the game is a leaf, even before the full depth is reached.
+ * Besides the leaves, every move made in the tree is counted, together with how
+ * many of them gave an extra turn, captured or ended the game.
+ * <p>
+ * A new board representation or a parallel walk must give exactly the same
+ * counts. The reference counts were made with MancalaArrayState, and agree
+ * with a walk on MancalaGameState up to depth 9.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public class MancalaPerft {
+
+	// Constants
+	public static final int DEFAULT_STONES = 4;
+	public static final int DEFAULT_DEPTH = 10;
+	public static final int RULES_CHECK_DEPTH = 6; // deepest depth also walked with MancalaGameState
+	private static final int SPLIT_PLIES = 2;
+
+	// Reference counts from the start of a game: depth, nodes, leaves, extra turns, captures and game ends
+	private static final long[][] REFERENCE_3 = {
+			{ 1, 6, 6, 1, 0, 0 },
+			{ 2, 41, 35, 6, 1, 0 },
+			{ 3, 223, 182, 33, 13, 0 },
+			{ 4, 1127, 904, 166, 85, 0 },
+			{ 5, 5370, 4243, 771, 400, 0 },
+			{ 6, 24788, 19418, 3456, 1851, 0 },
+			{ 7, 111891, 87103, 15492, 8082, 0 },
+			{ 8, 499617, 387726, 69548, 35911, 0 },
+			{ 9, 2215236, 1715619, 310163, 164944, 27 },
+			{ 10, 9773188, 7557979, 1369702, 760446, 357 },
+			{ 11, 42863265, 33090434, 6007807, 3551499, 3189 },
+			{ 12, 186938036, 144077960, 26122171, 16407246, 24172 } };
+	private static final long[][] REFERENCE_4 = {
+			{ 1, 6, 6, 1, 0, 0 },
+			{ 2, 41, 35, 7, 0, 0 },
+			{ 3, 226, 185, 34, 7, 0 },
+			{ 4, 1168, 942, 190, 35, 0 },
+			{ 5, 5858, 4690, 885, 143, 0 },
+			{ 6, 29091, 23233, 4373, 723, 0 },
+			{ 7, 143521, 114430, 19876, 4454, 0 },
+			{ 8, 706576, 563055, 89074, 27162, 0 },
+			{ 9, 3470066, 2763490, 409610, 160147, 1 },
+			{ 10, 16989673, 13519608, 1896819, 892155, 32 },
+			{ 11, 82860431, 65870790, 9061624, 4962748, 356 },
+			{ 12, 401599981, 318739906, 43554753, 27231082, 2961 } };
+
+	// Instance variables
+	private int threads;
+
+	// Constructor
+	public MancalaPerft(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * The counts of a walk.
+	 */
+	public static class Counts {
+
+		// Instance variables
+		private long nodes; // moves made, at any depth
+		private long leaves;
+		private long extraTurns;
+		private long captures;
+		private long gameEnds;
+
+		// Getters and setters
+		public long getNodes() {
+			return nodes;
+		}
+
+		public long getLeaves() {
+			return leaves;
+		}
+
+		public long getExtraTurns() {
+			return extraTurns;
+		}
+
+		public long getCaptures() {
+			return captures;
+		}
+
+		public long getGameEnds() {
+			return gameEnds;
+		}
+
+		private Counts add(Counts counts) {
+			nodes += counts.nodes;
+			leaves += counts.leaves;
+			extraTurns += counts.extraTurns;
+			captures += counts.captures;
+			gameEnds += counts.gameEnds;
+			return this;
+		}
+
+		private long[] toArray(int depth) {
+			return new long[] { depth, nodes, leaves, extraTurns, captures, gameEnds };
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Counts))
+				return false;
+			Counts counts = (Counts) object;
+			return nodes == counts.nodes && leaves == counts.leaves && extraTurns == counts.extraTurns
+					&& captures == counts.captures && gameEnds == counts.gameEnds;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(nodes, leaves, extraTurns, captures, gameEnds);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%,15d %,15d %,13d %,13d %,11d", nodes, leaves, extraTurns, captures, gameEnds);
+		}
+
+	}
+
+	/**
+	 * Walk the tree from a position, splitting it between the threads a few
+	 * plies below the root.
+	 *
+	 * @param state
+	 *            the position, which is left unchanged
+	 * @param depth
+	 *            the number of plies to walk
+	 * @return the counts of the walk
+	 */
+	public Counts perft(MancalaArrayState state, int depth) {
+
+		Counts counts = new Counts();
+		if (threads == 1 || depth <= SPLIT_PLIES) {
+			perft(new MancalaArrayState(state), depth, counts);
+			return counts;
+		}
+
+		// Count the plies above the split here, and walk the positions below them in parallel
+		List<MancalaArrayState> frontier = new ArrayList<>();
+		addFrontier(new MancalaArrayState(state), SPLIT_PLIES, counts, frontier);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return counts.add(pool.submit(() -> frontier.parallelStream().collect(Counts::new,
+					(subtree, position) -> perft(position, depth - SPLIT_PLIES, subtree), Counts::add)).get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Perft interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Perft failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+	}
+
+	/**
+	 * Make the moves of the plies above the split, counting them, and keep the
+	 * positions that are still to be walked.
+	 */
+	private static void addFrontier(MancalaArrayState state, int plies, Counts counts,
+			List<MancalaArrayState> frontier) {
+		if (plies == 0) {
+			frontier.add(new MancalaArrayState(state));
+			return;
+		}
+		int firstPit = MancalaArrayState.getFirstPit(state.getPlayerTurn());
+		for (int pit = firstPit; pit < firstPit + 6; pit++) {
+			if (state.getPitCount(pit) == 0)
+				continue;
+			long undo = state.makeMove(pit);
+			if (count(state, undo, counts))
+				counts.leaves++;
+			else
+				addFrontier(state, plies - 1, counts, frontier);
+			state.unmakeMove(undo);
+		}
+	}
+
+	/**
+	 * Walk the tree by making and unmaking moves.
+	 */
+	private static void perft(MancalaArrayState state, int depth, Counts counts) {
+		if (depth == 0) {
+			counts.leaves++;
+			return;
+		}
+		int firstPit = MancalaArrayState.getFirstPit(state.getPlayerTurn());
+		for (int pit = firstPit; pit < firstPit + 6; pit++) {
+			if (state.getPitCount(pit) == 0)
+				continue;
+			long undo = state.makeMove(pit);
+			if (count(state, undo, counts))
+				counts.leaves++;
+			else
+				perft(state, depth - 1, counts);
+			state.unmakeMove(undo);
+		}
+	}
+
+	/**
+	 * Count a move that has just been made.
+	 *
+	 * @return whether the move ended the game
+	 */
+	private static boolean count(MancalaArrayState state, long undo, Counts counts) {
+		counts.nodes++;
+		if (MancalaArrayState.isUndoExtraTurn(undo))
+			counts.extraTurns++;
+		if (MancalaArrayState.isUndoCapture(undo))
+			counts.captures++;
+		if (state.isEitherSideEmpty()) {
+			counts.gameEnds++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Walk the tree with MancalaGameState instead, copying the state for every
+	 * move like the old MancalaModel.dfs(). It is much slower, and only meant to
+	 * check that MancalaArrayState follows the same rules.
+	 *
+	 * @param state
+	 *            the position, which is left unchanged
+	 * @param depth
+	 *            the number of plies to walk
+	 * @return the counts of the walk
+	 */
+	public static Counts perftRules(MancalaGameState state, int depth) {
+		Counts counts = new Counts();
+		perftRules(state, depth, counts);
+		return counts;
+	}
+
+	private static void perftRules(MancalaGameState state, int depth, Counts counts) {
+		if (depth == 0) {
+			counts.leaves++;
+			return;
+		}
+		for (Pit pit : state.getSowablePits()) {
+
+			// Find where the last stone lands, skipping the opponent's Mancala
+			Player player = state.getPlayerTurn();
+			Pit mancalaOpponent = player == Player.A ? Pit.MANCALA_B : Pit.MANCALA_A;
+			Pit pitLast = pit;
+			for (int stones = state.getPitMap().get(pit).size(); stones > 0; stones--)
+				do
+					pitLast = Pit.values()[(pitLast.ordinal() + 1) % Pit.values().length];
+				while (pitLast == mancalaOpponent);
+
+			MancalaGameState child = new MancalaGameState(state);
+			child.sow(pit);
+			child.getStoneSequence().clear();
+			counts.nodes++;
+			if (child.getPlayerTurn() == player)
+				counts.extraTurns++;
+
+			// Without a capture, the pit where the last stone landed cannot be empty
+			if (!Pit.mancalas.contains(pitLast) && child.getPitMap().get(pitLast).isEmpty())
+				counts.captures++;
+			if (child.checkIfGameEnded()) {
+				counts.gameEnds++;
+				counts.leaves++;
+			} else
+				perftRules(child, depth - 1, counts);
+
+		}
+	}
+
+	/**
+	 * Get the stored counts of a walk from the start of a game.
+	 *
+	 * @return the counts, or null if none are stored for the stones and depth
+	 */
+	public static long[] getReference(int stones, int depth) {
+		long[][] reference = stones == 3 ? REFERENCE_3 : stones == 4 ? REFERENCE_4 : new long[0][];
+		return depth >= 1 && depth <= reference.length ? reference[depth - 1] : null;
+	}
+
+	/**
+	 * Walks every depth up to the given one from the start of a game, printing
+	 * the counts and the speed, and checks them against the reference counts.
+	 * The exit status is 1 if any count is different.
+	 *
+	 * @param args
+	 *            the stones per pit, the deepest depth and the number of threads,
+	 *            all optional.
+	 */
+	public static void main(String[] args) {
+
+		int stones = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_STONES;
+		int depth = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_DEPTH;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		MancalaArrayState state = new MancalaArrayState();
+		state.setupGame(stones);
+		MancalaPerft perft = new MancalaPerft(threads);
+
+		System.out.printf("Perft from %d stones per pit on %d threads%n", stones, threads);
+		System.out.printf("%5s %15s %15s %13s %13s %11s %10s %14s  %s%n", "depth", "nodes", "leaves", "extra turns",
+				"captures", "game ends", "ms", "nodes/s", "check");
+		boolean isMismatch = false;
+		for (int ply = 1; ply <= depth; ply++) {
+
+			long start = System.nanoTime();
+			Counts counts = perft.perft(state, ply);
+			long nanos = Math.max(1, System.nanoTime() - start);
+
+			// Compare with the stored counts, and with the rules of MancalaGameState for small depths
+			long[] reference = getReference(stones, ply);
+			String check = reference == null ? "-" : Arrays.equals(reference, counts.toArray(ply)) ? "ok" : "MISMATCH";
+			if (ply <= RULES_CHECK_DEPTH) {
+				MancalaGameState gameState = new MancalaGameState();
+				gameState.setupGame(stones);
+				boolean isSameRules = perftRules(gameState, ply).equals(counts);
+				check += isSameRules ? ", rules ok" : ", rules MISMATCH";
+				isMismatch |= !isSameRules;
+			}
+			isMismatch |= check.startsWith("MISMATCH");
+			System.out.printf("%5d %s %,10d %,14.0f  %s%n", ply, counts, nanos / 1000000, counts.getNodes() * 1e9 / nanos,
+					check);
+
+		}
+		System.exit(isMismatch ? 1 : 0);
+
+	}
+
+}
@@ -0,0 +1,872 @@
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Alpha-beta search engine for the Mancala AI. It follows the same move
+ * semantics as MancalaModel.minimax, where a player who earns an extra turn
+ * simply moves again, so it returns the same best move for the same depth while
+ * skipping branches that cannot change the result. Internally scores are always
+ * from player A's point of view, so results can be shared through a
+ * transposition table from one move to the next. Where the search stops, the
+ * position is scored by an evaluator, by default player A's Mancala minus player
+ * B's like minimax. With an endgame database, positions with few stones left are
+ * scored exactly instead.
+ * <p>
+ * Below the root, moves are tried best first: the move from the transposition
+ * table, then moves that earn an extra turn, then captures, then the killer
+ * moves of the depth, then the rest by their history score. The better the
+ * order, the sooner a cutoff comes, and the first move cutoff rate tells how
+ * well it works.
+ * <p>
+ * The driver picks how the windows are set. Plain alpha-beta searches every
+ * move with the full window. Principal variation search only searches the first
+ * move fully and proves the others worse with a null window, searching again
+ * when that fails. MTD(f) searches the root with null windows only, closing in
+ * on the score from a first guess. Kalah scores fall in a small range, so that
+ * takes few passes, and the transposition table keeps each pass cheap. All
+ * drivers find the same score, but where moves tie MTD(f) may pick another of
+ * them.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public class MancalaSearchEngine {
+
+	/**
+	 * How the search windows are set.
+	 */
+	public enum Driver {
+		ALPHA_BETA, PVS, MTDF
+	}
+
+	// Constants
+	private static final Pit[] pits = Pit.values();
+	private static final int MIN_TABLE_DEPTH = 2; // nodes closer to the leaves are cheaper to search again
+	public static final int MAX_DEPTH = 100; // deepest search, the move lists are sized for it
+	public static final int SOLVE_DEPTH = 1000; // longest line solve() follows to the end of the game
+	private static final int CLOCK_INTERVAL = 0x3FF; // check the clock once every 1024 leaves
+	private static final int ORDER_TABLE = 1 << 30;
+	private static final int ORDER_EXTRA_TURN = 1 << 28;
+	private static final int ORDER_CAPTURE = 1 << 26;
+	private static final int ORDER_KILLER = 1 << 24; // the newer killer gets twice as much
+	private static final BooleanSupplier NOT_STOPPED = () -> false;
+
+	// Instance variables
+	private MancalaTranspositionTable table; // may be null to search without one
+	private MancalaEndgameDatabase endgameDatabase; // may be null to search without one
+	private MancalaEvaluator evaluator;
+	private Driver driver;
+	private long nodeCount; // leaves evaluated in the last search
+	private long prunedCount; // sibling moves skipped by cutoffs in the last search
+	private int depthReached; // depth of the last completed search
+	private int passCount; // null window searches of the root in the last search, for MTD(f)
+	private long deadline; // System.nanoTime() after which the search gives up
+	private boolean isAborted;
+	private boolean isDepthLimited; // whether any line was cut off by depth instead of game end
+	private boolean isSolving; // whether every line is searched to the end of the game
+	private volatile boolean isStopped; // set by another thread to end the search early
+	private BooleanSupplier stopCondition; // also ends the search, belongs to the caller so a new search does not clear it
+	private int helperIndex; // 0 for the main search, otherwise a helper thread sharing the table
+	private long cutoffCount; // nodes cut off in the last search
+	private long firstMoveCutoffCount; // nodes cut off by the first move tried
+	private int[][] killers; // the last two moves that caused a cutoff, for each depth left
+	private int[] history; // how much each pit caused cutoffs, indexed by pit ordinal
+	private int[][] moveLists; // moves being tried, for each depth left
+	private int[][] moveOrders; // their order scores
+
+	// Constructors
+
+	public MancalaSearchEngine() {
+		this(null);
+	}
+
+	public MancalaSearchEngine(MancalaTranspositionTable table) {
+		this.table = table;
+		evaluator = MancalaEvaluator.Feature.STORE_DIFFERENCE;
+		driver = Driver.ALPHA_BETA;
+		killers = new int[MAX_DEPTH + 2][2];
+		history = new int[pits.length];
+		moveLists = new int[MAX_DEPTH + 2][6];
+		moveOrders = new int[MAX_DEPTH + 2][6];
+	}
+
+	// Getters and setters
+
+	public MancalaTranspositionTable getTranspositionTable() {
+		return table;
+	}
+
+	public void setTranspositionTable(MancalaTranspositionTable table) {
+		this.table = table;
+	}
+
+	public MancalaEndgameDatabase getEndgameDatabase() {
+		return endgameDatabase;
+	}
+
+	public void setEndgameDatabase(MancalaEndgameDatabase endgameDatabase) {
+		this.endgameDatabase = endgameDatabase;
+	}
+
+	public MancalaEvaluator getEvaluator() {
+		return evaluator;
+	}
+
+	/**
+	 * Set how positions are scored where the search stops. The transposition
+	 * table is left alone, the caller has to clear it, since its scores were made
+	 * by the old evaluator.
+	 *
+	 * @param evaluator
+	 */
+	public void setEvaluator(MancalaEvaluator evaluator) {
+		this.evaluator = evaluator;
+	}
+
+	public Driver getDriver() {
+		return driver;
+	}
+
+	public void setDriver(Driver driver) {
+		this.driver = driver;
+	}
+
+	public long getNodeCount() {
+		return nodeCount;
+	}
+
+	public long getPrunedCount() {
+		return prunedCount;
+	}
+
+	public long getCutoffCount() {
+		return cutoffCount;
+	}
+
+	public long getFirstMoveCutoffCount() {
+		return firstMoveCutoffCount;
+	}
+
+	/**
+	 * Get how often the first move tried was good enough for a cutoff, out of all
+	 * the cutoffs of the last search.
+	 *
+	 * @return the rate between 0 and 1, or 0 without any cutoff
+	 */
+	public double getFirstMoveCutoffRate() {
+		return cutoffCount == 0 ? 0 : (double) firstMoveCutoffCount / cutoffCount;
+	}
+
+	public int getPassCount() {
+		return passCount;
+	}
+
+	public int getDepthReached() {
+		return depthReached;
+	}
+
+	public boolean isAborted() {
+		return isAborted;
+	}
+
+	/**
+	 * @return whether any line of the last search was cut off by depth instead of
+	 *         reaching the end of the game
+	 */
+	public boolean isDepthLimited() {
+		return isDepthLimited;
+	}
+
+	/**
+	 * Make this engine a helper that fills a shared transposition table for the
+	 * main search. Odd helpers search one move deeper, and each helper starts from
+	 * a different root move, so that they do not all repeat the same work.
+	 *
+	 * @param helperIndex
+	 *            0 for the main search, 1 and up for helpers
+	 */
+	public void setHelperIndex(int helperIndex) {
+		this.helperIndex = helperIndex;
+	}
+
+	/**
+	 * Ask a running search to give up as soon as possible. Safe to call from any
+	 * thread. The flag is cleared when the next search starts.
+	 */
+	public void stop() {
+		isStopped = true;
+	}
+
+	/**
+	 * Get ready for a new search.
+	 */
+	private void reset(long deadline) {
+		reset(deadline, NOT_STOPPED);
+	}
+
+	/**
+	 * Get ready for a new search that also gives up once the condition holds.
+	 */
+	private void reset(long deadline, BooleanSupplier stopCondition) {
+		nodeCount = 0;
+		prunedCount = 0;
+		cutoffCount = 0;
+		firstMoveCutoffCount = 0;
+		passCount = 0;
+		isAborted = false;
+		isStopped = false;
+		this.stopCondition = stopCondition;
+		this.deadline = deadline;
+		isDepthLimited = false;
+
+		// Killers are about positions of the last search, history only fades
+		for (int[] killer : killers)
+			Arrays.fill(killer, -1);
+		for (int i = 0; i < history.length; i++)
+			history[i] >>= 1;
+	}
+
+	/**
+	 * Age the entries of the transposition table. Only the main search does that,
+	 * the helpers and root split tasks belong to a search that already started.
+	 */
+	private void startTableSearch() {
+		if (table != null && helperIndex == 0)
+			table.newSearch();
+	}
+
+	/**
+	 * Alpha-beta search to calculate the best move.
+	 *
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param depth
+	 *            how much moves the AI can look ahead, same as minimax, from 0 to
+	 *            MAX_DEPTH.
+	 * @return the best move after looking ahead the number of moves (depth)
+	 * @throws IllegalArgumentException
+	 *             if the depth is out of range
+	 */
+	public Pair<Pit, Integer> search(MancalaArrayState state, int depth) {
+
+		checkDepth(depth);
+		reset(Long.MAX_VALUE);
+		startTableSearch();
+
+		// Check if game has ended
+		if (state.isGameOver())
+			return new Pair<>(null, 0);
+
+		depth += helperIndex % 2;
+		depthReached = depth;
+		return searchRoot(new MancalaArrayState(state), depth, getHelperFirstPit(state), getFirstGuess(state));
+
+	}
+
+	/**
+	 * Iterative deepening search. Searches one move deeper at a time until the
+	 * time budget runs out, and returns the best move of the last search that
+	 * completed. Each search tries the best moves of the previous one first.
+	 *
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param budgetMillis
+	 *            how long the search may take, in milliseconds, or Long.MAX_VALUE
+	 *            to search until stopped.
+	 * @return the best move of the deepest completed search, or no move if the
+	 *         search was stopped before the first one completed
+	 */
+	public Pair<Pit, Integer> searchTimed(MancalaArrayState state, long budgetMillis) {
+		return searchTimed(state, budgetMillis, NOT_STOPPED);
+	}
+
+	/**
+	 * Iterative deepening search that also gives up once the condition holds.
+	 * Unlike stop(), the condition is not cleared when the search starts, so a
+	 * stop that comes just before is not lost.
+	 *
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param budgetMillis
+	 *            how long the search may take, in milliseconds, or Long.MAX_VALUE
+	 *            to search until stopped.
+	 * @param stopCondition
+	 *            makes the search give up once it is true, even during the first
+	 *            iteration.
+	 * @return the best move of the deepest completed search, or no move if the
+	 *         search was stopped before the first one completed
+	 */
+	public Pair<Pit, Integer> searchTimed(MancalaArrayState state, long budgetMillis, BooleanSupplier stopCondition) {
+
+		// The first search always completes, so that there is a move to return
+		long deadlineBudget = (budgetMillis == Long.MAX_VALUE) ? Long.MAX_VALUE
+				: System.nanoTime() + budgetMillis * 1000000;
+		reset(Long.MAX_VALUE, stopCondition);
+		startTableSearch();
+		depthReached = -1;
+
+		// Check if game has ended
+		if (state.isGameOver())
+			return new Pair<>(null, 0);
+
+		// Moves are made and unmade on a copy, other threads may be reading the original
+		state = new MancalaArrayState(state);
+		Pair<Pit, Integer> bestMove = null;
+		int pitFirst = getHelperFirstPit(state);
+		int guess = getFirstGuess(state);
+		long nodesBefore = 0;
+		for (int depth = helperIndex % 2; depth <= MAX_DEPTH; depth++) {
+			isDepthLimited = false;
+			long nodesStart = nodeCount;
+			MancalaSearchStats.IterationEvent event = new MancalaSearchStats.IterationEvent();
+			event.begin();
+			Pair<Pit, Integer> move = searchRoot(state, depth, pitFirst, guess);
+			if (helperIndex == 0)
+				MancalaSearchStats.commitIteration(event, depth, nodeCount - nodesStart, nodesBefore,
+						isAborted ? null : move, isAborted);
+			nodesBefore = nodeCount - nodesStart;
+			if (isAborted || move.x == null)
+				break;
+			guess = (state.getPlayerTurn() == Player.A) ? move.y : -move.y;
+			bestMove = move;
+			depthReached = depth;
+			pitFirst = move.x.ordinal();
+			deadline = deadlineBudget;
+
+			// Every line reached the end of the game, searching deeper changes nothing
+			if (!isDepthLimited || isStopRequested() || System.nanoTime() > deadline)
+				break;
+		}
+
+		// Only happens if the search was stopped during the first iteration
+		if (bestMove == null)
+			return new Pair<>(null, 0);
+
+		return bestMove;
+
+	}
+
+	/**
+	 * Search a single move of the current player with a full window, so that the
+	 * score is exact. Used to split the root moves between threads, so the caller
+	 * starts the new search of the transposition table, and isDepthLimited() tells
+	 * afterwards whether searching deeper could change the score.
+	 *
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param pit
+	 *            the pit to sow from.
+	 * @param depth
+	 *            how much moves the AI can look ahead, from 0 to MAX_DEPTH.
+	 * @param deadline
+	 *            System.nanoTime() after which the search gives up, check
+	 *            isAborted() afterwards.
+	 * @param stopCondition
+	 *            also makes the search give up once it is true, even if it became
+	 *            true before the search started.
+	 * @return the score of the move from player A's point of view
+	 */
+	public int searchMove(MancalaArrayState state, Pit pit, int depth, long deadline,
+			BooleanSupplier stopCondition) {
+		checkDepth(depth);
+		reset(deadline, stopCondition);
+		return alphaBeta(new MancalaArrayState(state), pit.ordinal(), depth, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Search a position to the end of every line within a window, so that the
+	 * score is proven instead of estimated. Lines go on after a player has more
+	 * than half of the stones, and a game that ended is scored by all the stones
+	 * each player gets, in the stone value of the evaluator. Every score is
+	 * proven, so entries of the transposition table are used whatever their depth,
+	 * and the bigger the subtree an entry stands for, the more it is worth
+	 * keeping. MancalaSolver calls it with null windows for MTD(f).
+	 *
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param alpha
+	 *            the score player A is already assured of.
+	 * @param beta
+	 *            the score player B is already assured of.
+	 * @param stopCondition
+	 *            makes the search give up once it is true, check isAborted()
+	 *            afterwards.
+	 * @return the fail-soft final score from player A's point of view
+	 * @throws IllegalStateException
+	 *             if a line is longer than SOLVE_DEPTH moves
+	 */
+	public int solve(MancalaArrayState state, int alpha, int beta, BooleanSupplier stopCondition) {
+		if (moveLists.length < SOLVE_DEPTH + 2) {
+			killers = new int[SOLVE_DEPTH + 2][2];
+			moveLists = new int[SOLVE_DEPTH + 2][6];
+			moveOrders = new int[SOLVE_DEPTH + 2][6];
+		}
+		reset(Long.MAX_VALUE, stopCondition);
+		isSolving = true;
+		try {
+			return alphaBeta(new MancalaArrayState(state), SOLVE_DEPTH, alpha, beta);
+		} finally {
+			isSolving = false;
+		}
+	}
+
+	/**
+	 * Make sure the move lists are deep enough for a search, helpers look one move
+	 * further.
+	 */
+	private static void checkDepth(int depth) {
+		if (depth < 0 || depth > MAX_DEPTH)
+			throw new IllegalArgumentException("depth must be between 0 and " + MAX_DEPTH + ", not " + depth);
+	}
+
+	/**
+	 * Pick a different root move to start from for each helper.
+	 *
+	 * @return the pit ordinal to try first, or -1 to go in pit order
+	 */
+	private int getHelperFirstPit(MancalaArrayState state) {
+		if (helperIndex == 0)
+			return -1;
+		int firstPit = MancalaArrayState.getFirstPit(state.getPlayerTurn());
+		for (int i = 0; i < 6; i++) {
+			int pit = firstPit + (helperIndex + i) % 6;
+			if (state.getPitCount(pit) > 0)
+				return pit;
+		}
+		return -1;
+	}
+
+	/**
+	 * Guess the score of a position for MTD(f): the score of an earlier search if
+	 * the transposition table has one, otherwise the evaluator's score.
+	 *
+	 * @return the guess from player A's point of view
+	 */
+	private int getFirstGuess(MancalaArrayState state) {
+		if (table != null) {
+			long entry = table.probe(state.getHash());
+			if (entry != MancalaTranspositionTable.MISSING)
+				return MancalaTranspositionTable.getScore(entry);
+		}
+		return evaluator.evaluate(state);
+	}
+
+	/**
+	 * Search each move of the current player with the driver.
+	 *
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param depth
+	 *            how much moves the AI can look ahead.
+	 * @param pitFirst
+	 *            the pit ordinal to try first, or -1 to go in pit order.
+	 * @param guess
+	 *            the expected score from player A's point of view, where MTD(f)
+	 *            starts.
+	 * @return the best move and its score from the current player's point of view
+	 */
+	private Pair<Pit, Integer> searchRoot(MancalaArrayState state, int depth, int pitFirst, int guess) {
+		if (driver == Driver.MTDF)
+			return searchRootMTDF(state, depth, pitFirst, guess);
+		int[] pitBest = new int[1];
+		int score = searchRoot(state, depth, pitFirst, Integer.MIN_VALUE, Integer.MAX_VALUE, pitBest);
+		return new Pair<>(pitBest[0] < 0 ? null : pits[pitBest[0]],
+				state.getPlayerTurn() == Player.A ? score : -score);
+	}
+
+	/**
+	 * MTD(f): search the root with null windows only, moving the window to the
+	 * score each pass returned, until the lower and upper bounds meet.
+	 */
+	private Pair<Pit, Integer> searchRootMTDF(MancalaArrayState state, int depth, int pitFirst, int guess) {
+		boolean isMaximizing = state.getPlayerTurn() == Player.A;
+		int lower = Integer.MIN_VALUE;
+		int upper = Integer.MAX_VALUE;
+		int score = guess;
+		int pitBest = -1;
+		int[] pitPass = new int[1];
+		while (lower < upper) {
+			int beta = (score == lower) ? score + 1 : score;
+			score = searchRoot(state, depth, pitFirst, beta - 1, beta, pitPass);
+			passCount++;
+			if (isAborted)
+				break;
+
+			// A pass proves the score of the move of the player to move only on one side
+			if (score < beta) {
+				upper = score;
+				if (!isMaximizing)
+					pitBest = pitPass[0];
+			} else {
+				lower = score;
+				if (isMaximizing)
+					pitBest = pitPass[0];
+			}
+			pitFirst = pitPass[0];
+		}
+		return new Pair<>(pitBest < 0 ? null : pits[pitBest], isMaximizing ? score : -score);
+	}
+
+	/**
+	 * Search each move of the current player within a window.
+	 *
+	 * @param state
+	 *            the state to search from. It is not modified.
+	 * @param depth
+	 *            how much moves the AI can look ahead.
+	 * @param pitFirst
+	 *            the pit ordinal to try first, or -1 to go in pit order.
+	 * @param alpha
+	 *            the score player A is already assured of.
+	 * @param beta
+	 *            the score player B is already assured of.
+	 * @param pitBest
+	 *            gets the pit ordinal of the best move, or -1 if there is none.
+	 * @return the fail-soft score from player A's point of view
+	 */
+	private int searchRoot(MancalaArrayState state, int depth, int pitFirst, int alpha, int beta, int[] pitBest) {
+
+		// Player A maximizes the score, player B minimizes it
+		Player player = state.getPlayerTurn();
+		boolean isMaximizing = player == Player.A;
+		int firstPit = MancalaArrayState.getFirstPit(player);
+		int best = isMaximizing ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+		boolean isFirst = true;
+		pitBest[0] = -1;
+
+		// Go through sowable pits
+		for (int i = -1; i < 6; i++) {
+			int pit = (i < 0) ? pitFirst : firstPit + i;
+			if (pit < 0 || (i >= 0 && pit == pitFirst) || state.getPitCount(pit) == 0)
+				continue;
+			int score = searchChild(state, pit, depth, alpha, beta, isMaximizing, isFirst);
+			isFirst = false;
+			if (isAborted)
+				break;
+			if (isMaximizing ? score > best : score < best) {
+				best = score;
+				pitBest[0] = pit;
+			}
+			if (isMaximizing)
+				alpha = Math.max(alpha, best);
+			else
+				beta = Math.min(beta, best);
+			if (alpha >= beta)
+				break;
+		}
+
+		return best;
+
+	}
+
+	/**
+	 * Search one move with the window the driver asks for. Principal variation
+	 * search expects every move after the first to be worse, and only searches
+	 * it again with the full window if a null window shows it is not.
+	 */
+	private int searchChild(MancalaArrayState state, int pit, int depth, int alpha, int beta, boolean isMaximizing,
+			boolean isFirst) {
+		if (isFirst || driver != Driver.PVS)
+			return alphaBeta(state, pit, depth, alpha, beta);
+		int score = isMaximizing ? alphaBeta(state, pit, depth, alpha, alpha + 1)
+				: alphaBeta(state, pit, depth, beta - 1, beta);
+		if (!isAborted && score > alpha && score < beta)
+			score = alphaBeta(state, pit, depth, alpha, beta);
+		return score;
+	}
+
+	/**
+	 * Count a leaf, and every so often check if the search should give up.
+	 */
+	private void countLeaf() {
+		if ((++nodeCount & CLOCK_INTERVAL) == 0 && (isStopRequested() || System.nanoTime() > deadline))
+			isAborted = true;
+	}
+
+	/**
+	 * Check if another thread asked the search to give up.
+	 */
+	private boolean isStopRequested() {
+		return isStopped || stopCondition.getAsBoolean();
+	}
+
+	/**
+	 * Make a move, search the position it leads to and take the move back, so
+	 * that the whole search runs on one state without copying it.
+	 *
+	 * @param state
+	 *            the state to make the move on. It is the same when this returns.
+	 * @param pitMove
+	 *            the pit ordinal to be sowed from
+	 * @param depth
+	 *            how many moves left to look ahead after this move.
+	 * @param alpha
+	 *            the score player A is already assured of.
+	 * @param beta
+	 *            the score player B is already assured of.
+	 * @return the score from player A's point of view.
+	 */
+	private int alphaBeta(MancalaArrayState state, int pitMove, int depth, int alpha, int beta) {
+		long undo = state.makeMove(pitMove);
+		int score = alphaBeta(state, depth, alpha, beta);
+		state.unmakeMove(undo);
+		return score;
+	}
+
+	/**
+	 * Recursive alpha-beta algorithm. Scores are fail-soft: a result at or below
+	 * alpha is an upper bound and a result at or above beta is a lower bound.
+	 *
+	 * @param state
+	 *            the state right after a move was made.
+	 * @param depth
+	 *            how many moves left to look ahead at this current state.
+	 * @param alpha
+	 *            the score player A is already assured of.
+	 * @param beta
+	 *            the score player B is already assured of.
+	 * @return the score from player A's point of view.
+	 */
+	private int alphaBeta(MancalaArrayState state, int depth, int alpha, int beta) {
+
+		// Get necessary values
+		int playerAScore = state.getPitCount(MancalaArrayState.MANCALA_A);
+		int playerBScore = state.getPitCount(MancalaArrayState.MANCALA_B);
+		int totalNumberOfStones = state.getInitStones() * 12;
+
+		// Few stones left, the endgame database knows the final score
+		if (endgameDatabase != null && endgameDatabase.contains(state)) {
+			countLeaf();
+			return endgameDatabase.getScore(state) * evaluator.getStoneValue();
+		}
+
+		// Terminating conditions, a solve only stops where the game does
+		if (isSolving) {
+			if (state.isEitherSideEmpty()) {
+				countLeaf();
+				return (MancalaEvaluator.Feature.STORE_DIFFERENCE.evaluate(state)
+						+ MancalaEvaluator.Feature.MATERIAL.evaluate(state)) * evaluator.getStoneValue();
+			}
+			if (depth == 0)
+				throw new IllegalStateException("A line is longer than " + SOLVE_DEPTH + " moves");
+		} else if (depth == 0 || state.isEitherSideEmpty() || playerAScore > totalNumberOfStones / 2
+				|| playerBScore > totalNumberOfStones / 2) {
+			if (depth == 0)
+				isDepthLimited = true;
+			countLeaf();
+			return evaluator.evaluate(state);
+		}
+
+		// Reuse the result of an earlier search of this position if it was deep enough
+		long hash = 0;
+		int alphaOriginal = alpha;
+		int betaOriginal = beta;
+		int pitFirst = -1;
+		boolean useTable = table != null && depth >= MIN_TABLE_DEPTH;
+		if (useTable) {
+			hash = state.getHash();
+			long entry = table.probe(hash);
+
+			// The best move found before is tried first, which follows the principal variation
+			if (entry != MancalaTranspositionTable.MISSING
+					&& MancalaTranspositionTable.getMove(entry) != MancalaTranspositionTable.NO_MOVE)
+				pitFirst = MancalaTranspositionTable.getMove(entry);
+			if (entry != MancalaTranspositionTable.MISSING
+					&& (isSolving || MancalaTranspositionTable.getDepth(entry) >= depth)) {
+				int score = MancalaTranspositionTable.getScore(entry);
+				switch (MancalaTranspositionTable.getBound(entry)) {
+				case MancalaTranspositionTable.EXACT:
+					isDepthLimited = true; // the stored search may have been cut off by depth
+					return score;
+				case MancalaTranspositionTable.LOWER:
+					alpha = Math.max(alpha, score);
+					break;
+				case MancalaTranspositionTable.UPPER:
+					beta = Math.min(beta, score);
+					break;
+				}
+				if (alpha >= beta) {
+					isDepthLimited = true;
+					return score;
+				}
+			}
+		}
+
+		boolean isMaximizing = state.getPlayerTurn() == Player.A;
+		int best = isMaximizing ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+		int pitBest = MancalaTranspositionTable.NO_MOVE;
+		long nodesBefore = nodeCount;
+		int[] moves = moveLists[depth];
+		int movesLeft = orderMoves(state, depth, pitFirst);
+		int moveCount = movesLeft;
+
+		// Go through sowable pits, best first
+		for (int i = 0; i < moveCount; i++) {
+			int pit = moves[i];
+			int score = searchChild(state, pit, depth - 1, alpha, beta, isMaximizing, i == 0);
+			movesLeft--;
+			if (isAborted)
+				return 0;
+			if (isMaximizing ? score > best : score < best) {
+				best = score;
+				pitBest = pit;
+			}
+			if (isMaximizing)
+				alpha = Math.max(alpha, best);
+			else
+				beta = Math.min(beta, best);
+
+			// The other player will never let the game get here, skip the remaining moves
+			if (alpha >= beta) {
+				prunedCount += movesLeft;
+				cutoffCount++;
+				if (i == 0)
+					firstMoveCutoffCount++;
+				addCutoff(pit, depth);
+				break;
+			}
+		}
+
+		// Remember the result and whether it is exact or only a bound
+		if (useTable) {
+			int bound = MancalaTranspositionTable.EXACT;
+			if (best <= alphaOriginal)
+				bound = MancalaTranspositionTable.UPPER;
+			else if (best >= betaOriginal)
+				bound = MancalaTranspositionTable.LOWER;
+			table.store(hash, isSolving ? 64 - Long.numberOfLeadingZeros(nodeCount - nodesBefore) : depth, best,
+					bound, pitBest);
+		}
+
+		return best;
+
+	}
+
+	/**
+	 * Put the sowable pits of the current player in the order they should be
+	 * tried.
+	 *
+	 * @param state
+	 *            the state to find the moves of.
+	 * @param depth
+	 *            how many moves left to look ahead, which picks the move list and
+	 *            killers.
+	 * @param pitTable
+	 *            the best move found in the transposition table, or -1 for none.
+	 * @return the number of moves, which are at the start of moveLists[depth]
+	 */
+	private int orderMoves(MancalaArrayState state, int depth, int pitTable) {
+		int[] moves = moveLists[depth];
+		int[] orders = moveOrders[depth];
+		int[] killer = killers[depth];
+		int firstPit = MancalaArrayState.getFirstPit(state.getPlayerTurn());
+		int moveCount = 0;
+		for (int i = 0; i < 6; i++) {
+			int pit = firstPit + i;
+			int stones = state.getPitCount(pit);
+			if (stones == 0)
+				continue;
+
+			// Score the move, going once around the board takes 13 stones
+			int order;
+			int pitLast = i + stones;
+			if (pit == pitTable)
+				order = ORDER_TABLE;
+			else if (stones >= 6 - i && (stones - (6 - i)) % 13 == 0)
+				order = ORDER_EXTRA_TURN + i; // the pit nearest the Mancala first, it leaves the others as they are
+			else if (pitLast <= 5 && state.getPitCount(firstPit + pitLast) == 0
+					&& state.getPitCount(MancalaArrayState.getOppositePit(firstPit + pitLast)) > 0)
+				order = ORDER_CAPTURE + state.getPitCount(MancalaArrayState.getOppositePit(firstPit + pitLast));
+			else if (pit == killer[0])
+				order = 2 * ORDER_KILLER;
+			else if (pit == killer[1])
+				order = ORDER_KILLER;
+			else
+				order = Math.min(history[pit], ORDER_KILLER - 1);
+
+			// Insert it, keeping the list sorted from the best order down
+			int j = moveCount++;
+			while (j > 0 && orders[j - 1] < order) {
+				moves[j] = moves[j - 1];
+				orders[j] = orders[j - 1];
+				j--;
+			}
+			moves[j] = pit;
+			orders[j] = order;
+		}
+		return moveCount;
+	}
+
+	/**
+	 * Remember a move that caused a cutoff, so that it is tried early in the
+	 * sibling positions and at other depths too.
+	 */
+	private void addCutoff(int pit, int depth) {
+		int[] killer = killers[depth];
+		if (killer[0] != pit) {
+			killer[1] = killer[0];
+			killer[0] = pit;
+		}
+		history[pit] = Math.min(history[pit] + depth * depth, ORDER_KILLER - 1);
+	}
+
+	/**
+	 * Compares the drivers on positions from random games, each driver with a
+	 * fresh transposition table.
+	 *
+	 * @param args
+	 *            the search depth, the number of positions and the table size in
+	 *            megabytes, all optional.
+	 */
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+		int positions = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+		int megabytes = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+		// The same positions for every driver, a few random moves into a game
+		List<MancalaArrayState> states = new ArrayList<>();
+		Random rand = new Random(11);
+		while (states.size() < positions) {
+			MancalaArrayState state = new MancalaArrayState();
+			state.setupGame(4);
+			int plies = rand.nextInt(14);
+			for (int ply = 0; ply < plies && !state.isEitherSideEmpty(); ply++) {
+				List<Pit> moves = new ArrayList<>(state.getSowablePits());
+				state.sow(moves.get(rand.nextInt(moves.size())));
+			}
+			if (!state.isEitherSideEmpty())
+				states.add(state);
+		}
+
+		System.out.printf("%d positions at depth %d, %d MB table%n", positions, depth, megabytes);
+		long nodesBase = 0;
+		int[] scoresBase = new int[positions];
+		for (Driver driver : Driver.values()) {
+			MancalaSearchEngine engine = new MancalaSearchEngine(
+					new MancalaTranspositionTable(megabytes, MancalaTranspositionTable.Replacement.DEPTH_PREFERRED));
+			engine.setDriver(driver);
+			long nodes = 0;
+			long cutoffs = 0;
+			long firstMoveCutoffs = 0;
+			int scoreDiff = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < positions; i++) {
+				int score = engine.search(states.get(i), depth).y;
+				nodes += engine.getNodeCount();
+				cutoffs += engine.getCutoffCount();
+				firstMoveCutoffs += engine.getFirstMoveCutoffCount();
+				if (driver == Driver.ALPHA_BETA)
+					scoresBase[i] = score;
+				else if (score != scoresBase[i])
+					scoreDiff++;
+			}
+			long millis = (System.nanoTime() - start) / 1000000;
+			if (driver == Driver.ALPHA_BETA)
+				nodesBase = nodes;
+			System.out.printf("%-10s %12d nodes (%5.1f%%) %7d ms, %.1f%% first move cutoffs, %d scores differ%n",
+					driver, nodes, 100.0 * nodes / nodesBase, millis,
+					cutoffs == 0 ? 0.0 : 100.0 * firstMoveCutoffs / cutoffs, scoreDiff);
+		}
+	}
+
+}
@@ -0,0 +1,364 @@
+import java.lang.management.*;
+import java.util.concurrent.atomic.*;
+
+import javax.management.*;
+
+import jdk.jfr.*;
+
+/**
+ * Keeps the figures of the AI searches, instead of parsing what they print.
+ * The figures of the last search and the totals are published as a JMX MBean
+ * under the Mancala domain, and every search and every iteration of iterative
+ * deepening is also recorded as a JDK Flight Recorder event, which costs
+ * nothing unless a recording is running.
+ * <p>
+ * Start a recording with -XX:StartFlightRecording or jcmd JFR.start, and find
+ * the events under Mancala in JDK Mission Control.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public class MancalaSearchStats implements MancalaSearchStatsMBean {
+
+	// Constants
+	public static final String DOMAIN = "Mancala";
+	private static final AtomicInteger instanceCount = new AtomicInteger();
+
+	// Instance variables
+	private long searchCount;
+	private long totalNodes;
+	private long totalNanos;
+	private String lastAlgorithm = "";
+	private String lastMove = "";
+	private int lastScore;
+	private int lastDepth;
+	private long lastNodes;
+	private double lastNodesPerSecond;
+	private double lastBranchingFactor;
+	private double lastTableHitRate;
+	private double lastPruningRate;
+	private double lastMillis;
+	private int lastThreads;
+
+	/**
+	 * A whole search for a move.
+	 */
+	@Name("mancala.Search")
+	@Label("Search")
+	@Category({ "Mancala", "AI" })
+	@Description("A search for the best move")
+	@StackTrace(false)
+	public static class SearchEvent extends Event {
+
+		@Label("Algorithm")
+		private String algorithm;
+
+		@Label("Move")
+		private String move;
+
+		@Label("Score")
+		private int score;
+
+		@Label("Depth")
+		private int depth;
+
+		@Label("Nodes")
+		private long nodes;
+
+		@Label("Nodes per Second")
+		private double nodesPerSecond;
+
+		@Label("Branching Factor")
+		@Description("The root of the nodes to the power of the depth")
+		private double branchingFactor;
+
+		@Label("Table Hit Rate")
+		@Percentage
+		private double tableHitRate;
+
+		@Label("Pruning Rate")
+		@Description("Moves skipped by cutoffs, out of those skipped and the nodes")
+		@Percentage
+		private double pruningRate;
+
+		@Label("Threads")
+		private int threads;
+
+	}
+
+	/**
+	 * One depth of an iterative deepening search.
+	 */
+	@Name("mancala.SearchIteration")
+	@Label("Search Iteration")
+	@Category({ "Mancala", "AI" })
+	@Description("One depth of iterative deepening")
+	@StackTrace(false)
+	public static class IterationEvent extends Event {
+
+		@Label("Depth")
+		private int depth;
+
+		@Label("Nodes")
+		private long nodes;
+
+		@Label("Branching Factor")
+		@Description("The nodes of this depth over those of the depth before")
+		private double branchingFactor;
+
+		@Label("Move")
+		private String move;
+
+		@Label("Score")
+		private int score;
+
+		@Label("Aborted")
+		private boolean isAborted;
+
+	}
+
+	/**
+	 * What is needed to measure a search once it ends.
+	 */
+	public static class Measurement {
+
+		// Instance variables
+		private String algorithm;
+		private MancalaTranspositionTable table;
+		private long start;
+		private long hits;
+		private long misses;
+		private SearchEvent event;
+
+		// Constructor
+		private Measurement(String algorithm, MancalaTranspositionTable table) {
+			this.algorithm = algorithm;
+			this.table = table;
+			if (table != null) {
+				hits = table.getHits();
+				misses = table.getMisses();
+			}
+			event = new SearchEvent();
+			event.begin();
+			start = System.nanoTime();
+		}
+
+	}
+
+	/**
+	 * Publish the figures over JMX, as one more MBean for every model.
+	 *
+	 * @return the name of the MBean, or null if it could not be published
+	 */
+	public ObjectName register() {
+		try {
+			ObjectName name = new ObjectName(DOMAIN + ":type=SearchStats,id=" + instanceCount.incrementAndGet());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			return name;
+		} catch (JMException e) {
+			System.out.println("Unable to publish the search statistics");
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Start measuring a search.
+	 *
+	 * @param algorithm
+	 *            the name of the search
+	 * @param table
+	 *            the transposition table it uses, or null for none
+	 * @return the measurement to give to end()
+	 */
+	public Measurement begin(String algorithm, MancalaTranspositionTable table) {
+		return new Measurement(algorithm, table);
+	}
+
+	/**
+	 * Finish measuring a search.
+	 *
+	 * @param measurement
+	 *            what begin() returned
+	 * @param bestMove
+	 *            the move found and its score
+	 * @param depth
+	 *            how deep the search looked ahead
+	 * @param nodes
+	 *            the positions searched
+	 * @param pruned
+	 *            the moves skipped by cutoffs
+	 * @param threads
+	 *            the threads that searched
+	 */
+	public void end(Measurement measurement, Pair<Pit, Integer> bestMove, int depth, long nodes, long pruned,
+			int threads) {
+
+		long nanos = Math.max(1, System.nanoTime() - measurement.start);
+		double nodesPerSecond = nodes * 1e9 / nanos;
+		double branchingFactor = depth > 0 && nodes > 0 ? Math.pow(nodes, 1.0 / depth) : 0;
+		double tableHitRate = 0;
+		if (measurement.table != null) {
+			long hits = measurement.table.getHits() - measurement.hits;
+			long probes = hits + measurement.table.getMisses() - measurement.misses;
+			tableHitRate = probes == 0 ? 0 : (double) hits / probes;
+		}
+		double pruningRate = nodes + pruned == 0 ? 0 : (double) pruned / (nodes + pruned);
+		String move = String.valueOf(bestMove.x);
+
+		synchronized (this) {
+			searchCount++;
+			totalNodes += nodes;
+			totalNanos += nanos;
+			lastAlgorithm = measurement.algorithm;
+			lastMove = move;
+			lastScore = bestMove.y;
+			lastDepth = depth;
+			lastNodes = nodes;
+			lastNodesPerSecond = nodesPerSecond;
+			lastBranchingFactor = branchingFactor;
+			lastTableHitRate = tableHitRate;
+			lastPruningRate = pruningRate;
+			lastMillis = nanos / 1e6;
+			lastThreads = threads;
+		}
+
+		SearchEvent event = measurement.event;
+		event.end();
+		if (event.shouldCommit()) {
+			event.algorithm = measurement.algorithm;
+			event.move = move;
+			event.score = bestMove.y;
+			event.depth = depth;
+			event.nodes = nodes;
+			event.nodesPerSecond = nodesPerSecond;
+			event.branchingFactor = branchingFactor;
+			event.tableHitRate = tableHitRate;
+			event.pruningRate = pruningRate;
+			event.threads = threads;
+			event.commit();
+		}
+
+	}
+
+	/**
+	 * Record one depth of iterative deepening, if a recording wants it.
+	 *
+	 * @param event
+	 *            the event, begun before the depth was searched
+	 * @param depth
+	 * @param nodes
+	 *            the positions searched at this depth
+	 * @param nodesBefore
+	 *            the positions searched at the depth before, or 0 for none
+	 * @param move
+	 *            the move found, or null if the depth was not finished
+	 * @param isAborted
+	 *            whether the time ran out during this depth
+	 */
+	public static void commitIteration(IterationEvent event, int depth, long nodes, long nodesBefore,
+			Pair<Pit, Integer> move, boolean isAborted) {
+		event.end();
+		if (!event.shouldCommit())
+			return;
+		event.depth = depth;
+		event.nodes = nodes;
+		event.branchingFactor = nodesBefore > 0 ? (double) nodes / nodesBefore : 0;
+		event.move = move == null ? null : String.valueOf(move.x);
+		event.score = move == null ? 0 : move.y;
+		event.isAborted = isAborted;
+		event.commit();
+	}
+
+	// Getters
+
+	@Override
+	public synchronized long getSearchCount() {
+		return searchCount;
+	}
+
+	@Override
+	public synchronized long getTotalNodes() {
+		return totalNodes;
+	}
+
+	@Override
+	public synchronized double getAverageMillis() {
+		return searchCount == 0 ? 0 : totalNanos / 1e6 / searchCount;
+	}
+
+	@Override
+	public synchronized double getAverageNodesPerSecond() {
+		return totalNanos == 0 ? 0 : totalNodes * 1e9 / totalNanos;
+	}
+
+	@Override
+	public synchronized String getLastAlgorithm() {
+		return lastAlgorithm;
+	}
+
+	@Override
+	public synchronized String getLastMove() {
+		return lastMove;
+	}
+
+	@Override
+	public synchronized int getLastScore() {
+		return lastScore;
+	}
+
+	@Override
+	public synchronized int getLastDepth() {
+		return lastDepth;
+	}
+
+	@Override
+	public synchronized long getLastNodes() {
+		return lastNodes;
+	}
+
+	@Override
+	public synchronized double getLastNodesPerSecond() {
+		return lastNodesPerSecond;
+	}
+
+	@Override
+	public synchronized double getLastBranchingFactor() {
+		return lastBranchingFactor;
+	}
+
+	@Override
+	public synchronized double getLastTableHitRate() {
+		return lastTableHitRate;
+	}
+
+	@Override
+	public synchronized double getLastPruningRate() {
+		return lastPruningRate;
+	}
+
+	@Override
+	public synchronized double getLastMillis() {
+		return lastMillis;
+	}
+
+	@Override
+	public synchronized int getLastThreads() {
+		return lastThreads;
+	}
+
+	@Override
+	public synchronized void reset() {
+		searchCount = 0;
+		totalNodes = 0;
+		totalNanos = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%s: %s, depth %d, %d nodes in %.1f ms (%.0f nodes/s), branching factor %.2f, "
+				+ "%.1f%% table hits, %.1f%% pruned", lastAlgorithm, lastMove, lastDepth, lastNodes, lastMillis,
+				lastNodesPerSecond, lastBranchingFactor, 100 * lastTableHitRate, 100 * lastPruningRate);
+	}
+
+}
@@ -0,0 +1,77 @@
+/**
+ * What the AI searches report over JMX, so that they can be watched from
+ * JConsole or VisualVM while the game is running.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public interface MancalaSearchStatsMBean {
+
+	/**
+	 * @return the number of searches since the start or the last reset
+	 */
+	long getSearchCount();
+
+	/**
+	 * @return the number of positions searched by all searches
+	 */
+	long getTotalNodes();
+
+	/**
+	 * @return the average time of a search, in milliseconds
+	 */
+	double getAverageMillis();
+
+	/**
+	 * @return the positions searched per second over all searches
+	 */
+	double getAverageNodesPerSecond();
+
+	/**
+	 * @return the search used last, like alphaBeta or iterativeDeepening
+	 */
+	String getLastAlgorithm();
+
+	/**
+	 * @return the move found by the last search
+	 */
+	String getLastMove();
+
+	int getLastScore();
+
+	/**
+	 * @return how deep the last search looked ahead
+	 */
+	int getLastDepth();
+
+	long getLastNodes();
+
+	double getLastNodesPerSecond();
+
+	/**
+	 * @return the effective branching factor of the last search, the root of its
+	 *         positions to the power of its depth
+	 */
+	double getLastBranchingFactor();
+
+	/**
+	 * @return the share of transposition table probes that found the position
+	 */
+	double getLastTableHitRate();
+
+	/**
+	 * @return the share of moves that cutoffs skipped, out of those skipped and
+	 *         the positions searched
+	 */
+	double getLastPruningRate();
+
+	double getLastMillis();
+
+	int getLastThreads();
+
+	/**
+	 * Start counting again.
+	 */
+	void reset();
+
+}
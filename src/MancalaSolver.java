@@ -0,0 +1,333 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Strong solver for the Mancala game. Instead of looking a fixed number of
+ * moves ahead, it searches every line to the end of the game and proves the
+ * final score, player A's stones minus player B's, that both players get with
+ * perfect play. Every game ends: a move either puts stones in a Mancala or
+ * only moves the mover's stones closer to it, so the search needs no depth.
+ * <p>
+ * The first few moves are expanded into a frontier of positions, which are
+ * solved in parallel and share one transposition table. Each one is solved by
+ * MTD(f): null window searches of MancalaSearchEngine.solve() close in on the
+ * score from both sides, with the same move order and table as the engine's
+ * searches, and the endgame database, if given, answers positions with few
+ * stones left. Every
+ * bound proven on a frontier position is appended to a checkpoint file, so a
+ * solve that was stopped resumes where it left off.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public class MancalaSolver {
+
+	// Constants
+	public static final int DEFAULT_SPLIT_PLIES = 2;
+	private static final int MAGIC = 0x4D534C56; // "MSLV"
+
+	// Instance variables
+	private MancalaTranspositionTable table;
+	private MancalaEndgameDatabase endgameDatabase; // may be null to solve without one
+	private int threads;
+	private int splitPlies; // how many moves from the root are expanded into parallel tasks
+	private File checkpointFile; // may be null to solve without one
+	private Map<Long, int[]> bounds; // lower and upper bound of each frontier position proven so far
+	private DataOutputStream checkpoint;
+	private LongAdder nodeCount;
+	private volatile boolean isStopped;
+
+	// Constructor
+	public MancalaSolver(int threads, int splitPlies, MancalaTranspositionTable table) {
+		if (splitPlies < 1)
+			throw new IllegalArgumentException("splitPlies must be at least 1, not " + splitPlies);
+		this.threads = Math.max(1, threads);
+		this.splitPlies = splitPlies;
+		this.table = table;
+		bounds = new ConcurrentHashMap<>();
+		nodeCount = new LongAdder();
+	}
+
+	// Getters and setters
+
+	public MancalaTranspositionTable getTranspositionTable() {
+		return table;
+	}
+
+	public MancalaEndgameDatabase getEndgameDatabase() {
+		return endgameDatabase;
+	}
+
+	public void setEndgameDatabase(MancalaEndgameDatabase endgameDatabase) {
+		this.endgameDatabase = endgameDatabase;
+	}
+
+	public File getCheckpointFile() {
+		return checkpointFile;
+	}
+
+	/**
+	 * Save the progress of the next solve to a file, and resume from it if it
+	 * already holds progress of the same position.
+	 *
+	 * @param checkpointFile
+	 *            the file, or null to solve without one
+	 */
+	public void setCheckpointFile(File checkpointFile) {
+		this.checkpointFile = checkpointFile;
+	}
+
+	public long getNodeCount() {
+		return nodeCount.sum();
+	}
+
+	/**
+	 * Ask a running solve to give up as soon as possible. Safe to call from any
+	 * thread. The progress made so far stays in the checkpoint file.
+	 */
+	public void stop() {
+		isStopped = true;
+	}
+
+	/**
+	 * Prove the final score of a position.
+	 *
+	 * @param state
+	 *            the state to solve. It is not modified.
+	 * @return the best move and the final score with perfect play from the current
+	 *         player's point of view, or null if the solve was stopped
+	 * @throws IOException
+	 *             if the checkpoint file cannot be read or written
+	 */
+	public Pair<Pit, Integer> solve(MancalaArrayState state) throws IOException {
+
+		isStopped = false;
+		nodeCount.reset();
+		bounds.clear();
+		MancalaArrayState root = new MancalaArrayState(state);
+		if (root.isEitherSideEmpty())
+			return new Pair<>(null, root.getPlayerTurn() == Player.A ? getFinalScore(root) : -getFinalScore(root));
+
+		// Collect the frontier positions, each one once
+		Map<Long, MancalaArrayState> frontier = new LinkedHashMap<>();
+		addFrontier(root, splitPlies, frontier);
+
+		// Solve them on all threads, keeping every proven bound
+		openCheckpoint(root.getHash());
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.submit(() -> frontier.entrySet().parallelStream()
+					.forEach(entry -> solveFrontier(entry.getKey(), entry.getValue()))).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			isStopped = true;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Solve task failed", e.getCause());
+		} finally {
+			pool.shutdown();
+			closeCheckpoint();
+		}
+		if (isStopped)
+			return null;
+
+		// Play the first moves out again, now that every frontier score is known
+		boolean isMaximizing = root.getPlayerTurn() == Player.A;
+		int firstPit = MancalaArrayState.getFirstPit(root.getPlayerTurn());
+		int pitBest = -1;
+		int best = 0;
+		for (int pit = firstPit; pit < firstPit + 6; pit++)
+			if (root.getPitCount(pit) > 0) {
+				long undo = root.makeMove(pit);
+				int score = getTreeScore(root, splitPlies - 1);
+				root.unmakeMove(undo);
+				if (pitBest < 0 || (isMaximizing ? score > best : score < best)) {
+					pitBest = pit;
+					best = score;
+				}
+			}
+		return new Pair<>(Pit.values()[pitBest], isMaximizing ? best : -best);
+
+	}
+
+	/**
+	 * Add the positions a number of moves below a state to the frontier. Lines
+	 * that end the game before stay out of it.
+	 */
+	private static void addFrontier(MancalaArrayState state, int plies, Map<Long, MancalaArrayState> frontier) {
+		if (state.isEitherSideEmpty())
+			return;
+		if (plies <= 0) {
+			frontier.putIfAbsent(state.getHash(), new MancalaArrayState(state));
+			return;
+		}
+		int firstPit = MancalaArrayState.getFirstPit(state.getPlayerTurn());
+		for (int pit = firstPit; pit < firstPit + 6; pit++)
+			if (state.getPitCount(pit) > 0) {
+				long undo = state.makeMove(pit);
+				addFrontier(state, plies - 1, frontier);
+				state.unmakeMove(undo);
+			}
+	}
+
+	/**
+	 * Minimax over the first moves, down to the solved frontier.
+	 *
+	 * @return the final score from player A's point of view
+	 */
+	private int getTreeScore(MancalaArrayState state, int plies) {
+		if (state.isEitherSideEmpty())
+			return getFinalScore(state);
+		if (plies <= 0)
+			return bounds.get(state.getHash())[0];
+		boolean isMaximizing = state.getPlayerTurn() == Player.A;
+		int firstPit = MancalaArrayState.getFirstPit(state.getPlayerTurn());
+		int best = isMaximizing ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+		for (int pit = firstPit; pit < firstPit + 6; pit++)
+			if (state.getPitCount(pit) > 0) {
+				long undo = state.makeMove(pit);
+				int score = getTreeScore(state, plies - 1);
+				state.unmakeMove(undo);
+				best = isMaximizing ? Math.max(best, score) : Math.min(best, score);
+			}
+		return best;
+	}
+
+	/**
+	 * Solve one frontier position with MTD(f), starting from the bounds of the
+	 * checkpoint if there are any.
+	 */
+	private void solveFrontier(long hash, MancalaArrayState state) {
+		int stones = state.getInitStones() * 12;
+		int[] bound = bounds.computeIfAbsent(hash, key -> new int[] { -stones, stones });
+		int lower = bound[0];
+		int upper = bound[1];
+
+		// Guess that the stones stay where they are
+		int score = Math.max(lower, Math.min(upper, MancalaEvaluator.Feature.STORE_DIFFERENCE.evaluate(state)
+				+ MancalaEvaluator.Feature.MATERIAL.evaluate(state)));
+		MancalaSearchEngine engine = new MancalaSearchEngine(table);
+		engine.setEndgameDatabase(endgameDatabase);
+		while (lower < upper) {
+			int beta = (score == lower) ? score + 1 : score;
+			score = engine.solve(state, beta - 1, beta, () -> isStopped);
+			nodeCount.add(engine.getNodeCount());
+			if (engine.isAborted())
+				break;
+			if (score < beta)
+				upper = score;
+			else
+				lower = score;
+			bounds.put(hash, new int[] { lower, upper });
+			writeCheckpoint(hash, lower, upper);
+		}
+	}
+
+	/**
+	 * Get the score of a game that has ended, each side keeping its own stones.
+	 */
+	private static int getFinalScore(MancalaArrayState state) {
+		return state.getPitCount(MancalaArrayState.MANCALA_A) - state.getPitCount(MancalaArrayState.MANCALA_B)
+				+ state.getStonesOnSide(Player.A) - state.getStonesOnSide(Player.B);
+	}
+
+	/**
+	 * Open the checkpoint file, reading the bounds it holds, and rewrite it with
+	 * only the latest bound of each position. A checkpoint of another position is
+	 * an error, so that it is never overwritten by accident.
+	 */
+	private void openCheckpoint(long rootHash) throws IOException {
+		if (checkpointFile == null)
+			return;
+		if (checkpointFile.length() > 0)
+			try (DataInputStream input = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(checkpointFile)))) {
+				if (input.readInt() != MAGIC || input.readLong() != rootHash)
+					throw new IOException(checkpointFile + " is not a checkpoint of this position");
+
+				// A record cut short by a crash is dropped, it is proven again
+				try {
+					while (true) {
+						long hash = input.readLong();
+						int lower = input.readInt();
+						int upper = input.readInt();
+						bounds.put(hash, new int[] { lower, upper });
+					}
+				} catch (EOFException e) {
+					// end of the checkpoint
+				}
+			}
+
+		// Write the bounds read so far to a new file first, then replace the old one
+		File compacted = new File(checkpointFile.getPath() + ".tmp");
+		try (DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(compacted)))) {
+			output.writeInt(MAGIC);
+			output.writeLong(rootHash);
+			for (Map.Entry<Long, int[]> entry : bounds.entrySet()) {
+				output.writeLong(entry.getKey());
+				output.writeInt(entry.getValue()[0]);
+				output.writeInt(entry.getValue()[1]);
+			}
+		}
+		Files.move(compacted.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		checkpoint = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(checkpointFile, true)));
+	}
+
+	private synchronized void writeCheckpoint(long hash, int lower, int upper) {
+		if (checkpoint == null)
+			return;
+		try {
+			checkpoint.writeLong(hash);
+			checkpoint.writeInt(lower);
+			checkpoint.writeInt(upper);
+			checkpoint.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to write " + checkpointFile, e);
+		}
+	}
+
+	private synchronized void closeCheckpoint() throws IOException {
+		if (checkpoint != null)
+			checkpoint.close();
+		checkpoint = null;
+	}
+
+	/**
+	 * Solves the starting position of a game.
+	 *
+	 * @param args
+	 *            the stones per pit, the checkpoint file, the table size in
+	 *            megabytes, the number of threads and the endgame database file,
+	 *            all optional.
+	 * @throws IOException
+	 *             if a file cannot be read or written
+	 */
+	public static void main(String[] args) throws IOException {
+		int stones = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		File checkpointFile = new File(args.length > 1 ? args[1] : "mancala-solve-" + stones + ".checkpoint");
+		int megabytes = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		File endgameFile = new File(args.length > 4 ? args[4] : MancalaEndgameDatabase.DEFAULT_FILE);
+
+		MancalaSolver solver = new MancalaSolver(threads, DEFAULT_SPLIT_PLIES,
+				new MancalaTranspositionTable(megabytes, MancalaTranspositionTable.Replacement.DEPTH_PREFERRED));
+		solver.setCheckpointFile(checkpointFile);
+		if (endgameFile.exists())
+			solver.setEndgameDatabase(new MancalaEndgameDatabase(endgameFile));
+
+		MancalaArrayState state = new MancalaArrayState();
+		state.setupGame(stones);
+		long start = System.nanoTime();
+		Pair<Pit, Integer> result = solver.solve(state);
+		if (result == null)
+			System.out.printf("Stopped after %d nodes, progress is in %s.%n", solver.getNodeCount(), checkpointFile);
+		else
+			System.out.printf("With %d stones per pit, the final score is %d for player A, who plays %s. "
+					+ "(%d nodes in %.1f s on %d threads)%n", stones, result.y, result.x, solver.getNodeCount(),
+					(System.nanoTime() - start) / 1e9, threads);
+	}
+
+}
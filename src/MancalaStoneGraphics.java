@@ -1,6 +1,7 @@
 import java.awt.*;
 import java.awt.geom.*;
 import java.util.*;
+import java.util.function.*;
 
 /**
  * A Mancala stone class to hold each stone's graphics properties.
@@ -10,9 +11,11 @@ import java.util.*;
  */
 public class MancalaStoneGraphics {
 
-	// Instance variables
-	private final static double frames = 30;
-	
+	// Constants
+	public static final long DURATION_NANOS = 330_000_000L; // how long a stone takes to reach its pit
+	public static final DoubleUnaryOperator LINEAR = t -> t;
+	public static final DoubleUnaryOperator EASE_IN_OUT = t -> t * t * (3 - 2 * t);
+
 	// Instance variables;
 	private double x;
 	private double y;
@@ -24,12 +27,11 @@ public class MancalaStoneGraphics {
 	private boolean isAnimating;
 	private double randX;
 	private double randY;
-	private double diffX;
-	private double diffY;
-	private double segmentX;
-	private double segmentY;
-	private double nextX;
-	private double nextY;
+	private double startX;
+	private double startY;
+	private long startNanos;
+	private long durationNanos;
+	private DoubleUnaryOperator easing;
 
 	// Constructor
 	public MancalaStoneGraphics(Color color) {
@@ -37,6 +39,8 @@ public class MancalaStoneGraphics {
 		y = 0;
 		this.color = color;
 		isAnimating = false;
+		durationNanos = DURATION_NANOS;
+		easing = EASE_IN_OUT;
 		coinSide = (int) Math.round(Math.random());
 		coinAngle = 2 * Math.PI * Math.random();
 	}
@@ -51,12 +55,11 @@ public class MancalaStoneGraphics {
 		isAnimating = stoneGraphics.isAnimating;
 		randX = stoneGraphics.randX;
 		randY = stoneGraphics.randY;
-		diffX = stoneGraphics.diffX;
-		diffY = stoneGraphics.diffY;
-		segmentX = stoneGraphics.segmentX;
-		segmentY = stoneGraphics.segmentY;
-		nextX = stoneGraphics.nextX;
-		nextY = stoneGraphics.nextY;
+		startX = stoneGraphics.startX;
+		startY = stoneGraphics.startY;
+		startNanos = stoneGraphics.startNanos;
+		durationNanos = stoneGraphics.durationNanos;
+		easing = stoneGraphics.easing;
 	}
 
 	// Getters and setters
@@ -93,52 +96,36 @@ public class MancalaStoneGraphics {
 		this.isAnimating = isAnimating;
 	}
 
-	public double getNextX() {
-		return nextX;
-	}
-
-	public void setNextX(double nextX) {
-		this.nextX = nextX;
-	}
-
-	public double getNextY() {
-		return nextY;
-	}
-
-	public void setNextY(double nextY) {
-		this.nextY = nextY;
-	}
-
-	public double getDiffX() {
-		return diffX;
-	}
-
-	public void setDiffX(double diffX) {
-		this.diffX = diffX;
-	}
-
-	public double getDiffY() {
-		return diffY;
+	public long getStartNanos() {
+		return startNanos;
 	}
 
-	public void setDiffY(double diffY) {
-		this.diffY = diffY;
+	/**
+	 * @return when the stone reaches its final position, in System.nanoTime()
+	 */
+	public long getEndNanos() {
+		return startNanos + durationNanos;
 	}
 
-	public double getSegmentX() {
-		return segmentX;
+	public long getDurationNanos() {
+		return durationNanos;
 	}
 
-	public void setSegmentX(double segmentX) {
-		this.segmentX = segmentX;
+	public void setDurationNanos(long durationNanos) {
+		this.durationNanos = durationNanos;
 	}
 
-	public double getSegmentY() {
-		return segmentY;
+	public DoubleUnaryOperator getEasing() {
+		return easing;
 	}
 
-	public void setSegmentY(double segmentY) {
-		this.segmentY = segmentY;
+	/**
+	 * @param easing
+	 *            maps the share of the duration that has passed to the share of
+	 *            the path travelled, both from 0 to 1
+	 */
+	public void setEasing(DoubleUnaryOperator easing) {
+		this.easing = easing;
 	}
 
 	public double getRandX() {
@@ -166,31 +153,43 @@ public class MancalaStoneGraphics {
 	}
 
 	/**
-	 * Do calculations to animate the translating the stone to the randomized (x, y)
-	 * position
+	 * Start translating the stone from where it is now to the randomized (x, y)
+	 * position.
 	 * 
 	 * @param randX
 	 *            the final x position to translate to
 	 * @param randY
 	 *            the final y position to translate to
+	 * @param startNanos
+	 *            when the stone starts moving, in System.nanoTime()
 	 */
-	public void queueAnimating(double randX, double randY) {
-
+	public void queueAnimating(double randX, double randY, long startNanos) {
 		this.randX = randX;
 		this.randY = randY;
+		this.startNanos = startNanos;
+		startX = x;
+		startY = y;
+	}
 
-		// Get the lengths
-		diffX = randX - x;
-		diffY = randY - y;
-
-		// Break up the x and y components of the translate path into segments
-		segmentX = diffX / frames;
-		segmentY = diffY / frames;
-
-		// Translate the stones
-		nextX = x + segmentX;
-		nextY = y + segmentY;
-
+	/**
+	 * Move the stone to where it should be at the given time, so that it takes
+	 * the same time to arrive however often this is called.
+	 * 
+	 * @param nowNanos
+	 *            the time of the frame, in System.nanoTime()
+	 * @return whether the stone has reached its final position
+	 */
+	public boolean animate(long nowNanos) {
+		double t = durationNanos <= 0 ? 1 : (double) (nowNanos - startNanos) / durationNanos;
+		if (t >= 1) {
+			x = randX;
+			y = randY;
+			return true;
+		}
+		double share = easing.applyAsDouble(Math.max(0, t));
+		x = startX + (randX - startX) * share;
+		y = startY + (randY - startY) * share;
+		return false;
 	}
 
 }
@@ -0,0 +1,256 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Plays the Mancala AIs against each other from the command line, without any
+ * Swing, on all cores at once. Every pair of engines plays the same randomized
+ * openings with 3 and 4 stones per pit, each engine once as player A and once
+ * as player B, and the results are reported as wins, draws and losses with an
+ * Elo difference.
+ * <p>
+ * Games are played on a MancalaArrayState, which follows the same rules as
+ * MancalaGameState, and end when one side runs out of stones, each player
+ * keeping the stones on their own side.
+ * <p>
+ * An engine is given as a name with options after colons:
+ * <ul>
+ * <li>random: picks a sowable pit at random</li>
+ * <li>ab:depth[:evaluator]: alpha-beta search to a fixed depth</li>
+ * <li>id:millis[:evaluator]: iterative deepening with a time budget</li>
+ * <li>mcts:playouts: Monte Carlo tree search</li>
+ * </ul>
+ * The evaluator is "store" for the store difference or "weighted" for the
+ * weighted heuristic, the default.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public class MancalaTournament {
+
+	// Constants
+	public static final int DEFAULT_GAMES = 200;
+	public static final int OPENING_PLIES = 2;
+	private static final int[] STONES = { 3, 4 };
+	private static final int TABLE_MEGABYTES = 16;
+
+	// Instance variables
+	private List<Contender> contenders;
+	private int games; // per pair of engines
+	private int threads;
+	private long seed;
+
+	// Constructor
+	public MancalaTournament(List<String> engines, int games, int threads, long seed) {
+		contenders = new ArrayList<>();
+		for (String engine : engines)
+			contenders.add(new Contender(engine));
+		this.games = games;
+		this.threads = Math.max(1, threads);
+		this.seed = seed;
+	}
+
+	/**
+	 * Play every pair of engines against each other and print the results.
+	 */
+	public void run() {
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int first = 0; first < contenders.size(); first++)
+				for (int second = first + 1; second < contenders.size(); second++)
+					playMatch(contenders.get(first), contenders.get(second), executor);
+		} finally {
+			executor.shutdown();
+		}
+
+	}
+
+	/**
+	 * Play the games between two engines on all threads.
+	 */
+	private void playMatch(Contender first, Contender second, ExecutorService executor) {
+
+		// Each opening is played twice, with the engines swapping sides
+		List<Callable<Integer>> tasks = new ArrayList<>();
+		Random rand = new Random(seed);
+		for (int game = 0; game < games; game += 2) {
+			MancalaArrayState opening = getOpening(STONES[(game / 2) % STONES.length], rand);
+			tasks.add(() -> play(opening, first, second));
+			if (game + 1 < games)
+				tasks.add(() -> -play(opening, second, first));
+		}
+
+		long start = System.nanoTime();
+		int wins = 0;
+		int draws = 0;
+		int losses = 0;
+		try {
+			for (Future<Integer> result : executor.invokeAll(tasks)) {
+				int score = result.get();
+				if (score > 0)
+					wins++;
+				else if (score < 0)
+					losses++;
+				else
+					draws++;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Game failed", e.getCause());
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		// Elo difference of the first engine, with a 95% confidence margin
+		int played = wins + draws + losses;
+		double score = (wins + 0.5 * draws) / played;
+		double deviation = Math.sqrt(
+				(wins * Math.pow(1 - score, 2) + draws * Math.pow(0.5 - score, 2) + losses * Math.pow(score, 2))
+						/ played / played);
+		double elo = getElo(score);
+		double margin = (getElo(score + 1.96 * deviation) - getElo(score - 1.96 * deviation)) / 2;
+		System.out.printf("%s vs %s: +%d =%d -%d (%.1f%%), Elo %+.0f +/- %.0f, %d games in %.1f s (%.1f games/s)%n",
+				first, second, wins, draws, losses, 100 * score, elo, margin, played, seconds, played / seconds);
+
+	}
+
+	/**
+	 * Convert a score between 0 and 1 to an Elo difference, keeping it finite for
+	 * a clean sweep.
+	 */
+	private static double getElo(double score) {
+		score = Math.max(0.001, Math.min(0.999, score));
+		return -400 * Math.log10(1 / score - 1);
+	}
+
+	/**
+	 * Play a few random moves from the start, so that the games differ.
+	 */
+	private static MancalaArrayState getOpening(int stones, Random rand) {
+		while (true) {
+			MancalaArrayState state = new MancalaArrayState();
+			state.setupGame(stones);
+			for (int ply = 0; ply < OPENING_PLIES && !state.isEitherSideEmpty(); ply++) {
+				int firstPit = MancalaArrayState.getFirstPit(state.getPlayerTurn());
+				int pit;
+				do
+					pit = firstPit + rand.nextInt(6);
+				while (state.getPitCount(pit) == 0);
+				state.sow(pit);
+			}
+			if (!state.isEitherSideEmpty())
+				return state;
+		}
+	}
+
+	/**
+	 * Play one game to the end.
+	 *
+	 * @return player A's stones minus player B's at the end of the game
+	 */
+	private static int play(MancalaArrayState opening, Contender playerA, Contender playerB) {
+		MancalaArrayState state = new MancalaArrayState(opening);
+		Function<MancalaArrayState, Pit> moverA = playerA.getMover();
+		Function<MancalaArrayState, Pit> moverB = playerB.getMover();
+		while (!state.isEitherSideEmpty())
+			state.sow((state.getPlayerTurn() == Player.A ? moverA : moverB).apply(state));
+		return state.getPitCount(MancalaArrayState.MANCALA_A) + state.getStonesOnSide(Player.A)
+				- state.getPitCount(MancalaArrayState.MANCALA_B) - state.getStonesOnSide(Player.B);
+	}
+
+	/**
+	 * An engine taking part, with one instance of it per thread.
+	 */
+	private static class Contender {
+
+		// Instance variables
+		private String name;
+		private ThreadLocal<Function<MancalaArrayState, Pit>> movers;
+
+		// Constructor
+		private Contender(String name) {
+			this.name = name;
+			String[] options = name.split(":");
+			switch (options[0]) {
+			case "random":
+				movers = ThreadLocal.withInitial(() -> state -> {
+					List<Pit> pits = new ArrayList<>(state.getSowablePits());
+					return pits.get(ThreadLocalRandom.current().nextInt(pits.size()));
+				});
+				break;
+			case "ab":
+			case "id":
+				int limit = Integer.parseInt(options[1]);
+				if (options[0].equals("ab") && (limit < 0 || limit > MancalaSearchEngine.MAX_DEPTH))
+					throw new IllegalArgumentException(
+							"The depth of " + name + " must be between 0 and " + MancalaSearchEngine.MAX_DEPTH);
+				if (options[0].equals("id") && limit <= 0)
+					throw new IllegalArgumentException("The time of " + name + " must be at least 1 ms");
+				MancalaEvaluator evaluator = getEvaluator(options.length > 2 ? options[2] : "weighted");
+				boolean isTimed = options[0].equals("id");
+				movers = ThreadLocal.withInitial(() -> {
+					MancalaSearchEngine engine = new MancalaSearchEngine(new MancalaTranspositionTable(TABLE_MEGABYTES,
+							MancalaTranspositionTable.Replacement.DEPTH_PREFERRED));
+					engine.setEvaluator(evaluator);
+					engine.setDriver(MancalaSearchEngine.Driver.MTDF);
+					return state -> (isTimed ? engine.searchTimed(state, limit) : engine.search(state, limit)).x;
+				});
+				break;
+			case "mcts":
+				long playouts = Long.parseLong(options[1]);
+				movers = ThreadLocal.withInitial(() -> {
+					MancalaMonteCarloSearch search = new MancalaMonteCarloSearch(1);
+					return state -> search.search(state, playouts, Long.MAX_VALUE).x;
+				});
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown engine " + name);
+			}
+		}
+
+		private static MancalaEvaluator getEvaluator(String name) {
+			switch (name) {
+			case "store":
+				return MancalaEvaluator.Feature.STORE_DIFFERENCE;
+			case "weighted":
+				return new MancalaWeightedEvaluator();
+			default:
+				throw new IllegalArgumentException("Unknown evaluator " + name);
+			}
+		}
+
+		private Function<MancalaArrayState, Pit> getMover() {
+			return movers.get();
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+
+	}
+
+	/**
+	 * Runs a tournament.
+	 *
+	 * @param args
+	 *            the number of games per pair of engines, the number of threads,
+	 *            and two or more engines, all optional.
+	 */
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		List<String> engines = args.length > 2 ? Arrays.asList(args).subList(2, args.length)
+				: Arrays.asList("ab:8:weighted", "ab:8:store");
+		if (engines.size() < 2) {
+			System.err.printf("A tournament needs at least two engines, only %s was given%n", engines.get(0));
+			System.exit(1);
+		}
+		System.out.printf("%d games per pair on %d threads, %d random plies from 3 and 4 stones%n", games, threads,
+				OPENING_PLIES);
+		new MancalaTournament(engines, games, threads, 1).run();
+	}
+
+}
@@ -0,0 +1,191 @@
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A fixed-size transposition table for the Mancala AI, keyed on the Zobrist hash
+ * of a MancalaArrayState. Each slot stores the search depth, score, bound type
+ * and best move of a position, packed into one long, so the table allocates
+ * nothing after it is created. Scores are always from player A's point of view,
+ * so entries stay valid from one move to the next.
+ * <p>
+ * The table can be shared by several search threads without locking. Each key
+ * is stored XORed with its data, so an entry torn by two threads writing at
+ * once simply fails to match and reads as a miss.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public class MancalaTranspositionTable {
+
+	/**
+	 * Decides whether a new entry may overwrite an occupied slot.
+	 */
+	public enum Replacement {
+		ALWAYS, // always keep the newest entry
+		DEPTH_PREFERRED // keep the deeper entry, unless the old one is from an earlier move
+	}
+
+	// Constants
+	public static final int EXACT = 0;
+	public static final int LOWER = 1; // score is a lower bound (search failed high)
+	public static final int UPPER = 2; // score is an upper bound (search failed low)
+	public static final int NO_MOVE = 15;
+	public static final long MISSING = 0;
+	private static final int ENTRY_BYTES = 16;
+	private static final long VALID = 1L << 62;
+
+	// Instance variables
+	private long[] keys;
+	private long[] data;
+	private int mask;
+	private Replacement replacement;
+	private volatile int generation;
+	private LongAdder hits;
+	private LongAdder misses;
+	private LongAdder collisions;
+
+	// Constructor
+	public MancalaTranspositionTable(int megabytes, Replacement replacement) {
+		long maxEntries = Math.max(1, ((long) megabytes << 20) / ENTRY_BYTES);
+		int entries = (int) Long.highestOneBit(Math.min(maxEntries, 1 << 30));
+		keys = new long[entries];
+		data = new long[entries];
+		mask = entries - 1;
+		this.replacement = replacement;
+		generation = 0;
+		hits = new LongAdder();
+		misses = new LongAdder();
+		collisions = new LongAdder();
+	}
+
+	// Getters and setters
+
+	public int getCapacity() {
+		return keys.length;
+	}
+
+	public Replacement getReplacement() {
+		return replacement;
+	}
+
+	public void setReplacement(Replacement replacement) {
+		this.replacement = replacement;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getCollisions() {
+		return collisions.sum();
+	}
+
+	/**
+	 * Mark the start of a new move. Entries from earlier moves are kept, but the
+	 * depth-preferred policy lets fresh entries replace them.
+	 */
+	public void newSearch() {
+		generation = (generation + 1) & 0xFF;
+	}
+
+	/**
+	 * Empty the table and reset the counters.
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(data, 0);
+		hits.reset();
+		misses.reset();
+		collisions.reset();
+	}
+
+	/**
+	 * Look up a position.
+	 *
+	 * @param hash
+	 *            the Zobrist hash of the position
+	 * @return the packed entry, or MISSING if the position is not stored.
+	 */
+	public long probe(long hash) {
+		int index = (int) hash & mask;
+		long entry = data[index];
+		if (entry != MISSING && (keys[index] ^ entry) == hash) {
+			hits.increment();
+			return entry;
+		}
+		if (entry != MISSING)
+			collisions.increment();
+		misses.increment();
+		return MISSING;
+	}
+
+	/**
+	 * Store the result of searching a position.
+	 *
+	 * @param hash
+	 *            the Zobrist hash of the position
+	 * @param depth
+	 *            how many moves were searched below the position
+	 * @param score
+	 *            the score from player A's point of view
+	 * @param bound
+	 *            EXACT, LOWER or UPPER
+	 * @param move
+	 *            the ordinal of the best pit found, or NO_MOVE
+	 */
+	public void store(long hash, int depth, int score, int bound, int move) {
+		int index = (int) hash & mask;
+		long entry = data[index];
+		if (entry != MISSING && (keys[index] ^ entry) != hash && replacement == Replacement.DEPTH_PREFERRED
+				&& getGeneration(entry) == generation && getDepth(entry) > depth)
+			return;
+		entry = pack(depth, score, bound, move, generation);
+		keys[index] = hash ^ entry;
+		data[index] = entry;
+	}
+
+	/**
+	 * Pack an entry into a long.
+	 */
+	private static long pack(int depth, int score, int bound, int move, int generation) {
+		return VALID | ((long) generation << 32) | ((long) move << 26) | ((long) bound << 24)
+				| ((long) Math.min(depth, 0xFF) << 16) | ((score + 0x8000) & 0xFFFF);
+	}
+
+	public static int getScore(long entry) {
+		return (int) (entry & 0xFFFF) - 0x8000;
+	}
+
+	public static int getDepth(long entry) {
+		return (int) (entry >>> 16) & 0xFF;
+	}
+
+	public static int getBound(long entry) {
+		return (int) (entry >>> 24) & 0x3;
+	}
+
+	public static int getMove(long entry) {
+		return (int) (entry >>> 26) & 0xF;
+	}
+
+	private static int getGeneration(long entry) {
+		return (int) (entry >>> 32) & 0xFF;
+	}
+
+	/**
+	 * Produces a summary of the counters.
+	 */
+	@Override
+	public String toString() {
+		long hits = getHits();
+		long misses = getMisses();
+		long probes = hits + misses;
+		return String.format("%d entries, %d hits, %d misses, %d collisions (%.1f%% hit rate)", keys.length, hits,
+				misses, getCollisions(), probes == 0 ? 0.0 : 100.0 * hits / probes);
+	}
+
+}
@@ -21,6 +21,7 @@ public class MancalaView extends JFrame {
 	private MancalaBoardPanel boardPanel;
 	private JButton buttonStart;
 	private JButton buttonUndo;
+	private JButton buttonRedo;
 	private ButtonGroup bg;
 	private MancalaBoardFormatter boardFormatter;
 
@@ -61,7 +62,7 @@ public class MancalaView extends JFrame {
 
 		// Combo Boxes do not behave well with Boxes, need to include an anon class :(
 		// Not including anon class will cause the combo box's height to stretch out
-		JComboBox boardTypeComboBox = new JComboBox() {
+		JComboBox<String> boardTypeComboBox = new JComboBox<String>() {
 			@Override
 			public Dimension getMaximumSize() {
 				Dimension max = super.getMaximumSize();
@@ -98,7 +99,7 @@ public class MancalaView extends JFrame {
 		Box playerALabelBox = Box.createHorizontalBox();
 		playerALabelBox.add(playerALabel);
 		playerALabelBox.add(Box.createHorizontalGlue());
-		JComboBox playerAComboBox = new JComboBox() {
+		JComboBox<String> playerAComboBox = new JComboBox<String>() {
 			@Override
 			public Dimension getMaximumSize() {
 				Dimension max = super.getMaximumSize();
@@ -108,6 +109,7 @@ public class MancalaView extends JFrame {
 		};
 		playerAComboBox.addItem("Human");
 		playerAComboBox.addItem("Computer");
+		playerAComboBox.addItem("Computer (MCTS)");
 		playerAComboBox.setSelectedIndex(0);
 		Box playerABox = Box.createVerticalBox();
 		playerABox.add(playerALabelBox);
@@ -119,7 +121,7 @@ public class MancalaView extends JFrame {
 		Box playerBLabelBox = Box.createHorizontalBox();
 		playerBLabelBox.add(playerBLabel);
 		playerBLabelBox.add(Box.createHorizontalGlue());
-		JComboBox playerBComboBox = new JComboBox() {
+		JComboBox<String> playerBComboBox = new JComboBox<String>() {
 			@Override
 			public Dimension getMaximumSize() {
 				Dimension max = super.getMaximumSize();
@@ -129,6 +131,7 @@ public class MancalaView extends JFrame {
 		};
 		playerBComboBox.addItem("Human");
 		playerBComboBox.addItem("Computer");
+		playerBComboBox.addItem("Computer (MCTS)");
 		playerBComboBox.setSelectedIndex(1);
 		Box playerBBox = Box.createVerticalBox();
 		playerBBox.add(playerBLabelBox);
@@ -170,7 +173,8 @@ public class MancalaView extends JFrame {
 		bottomPanel.setLayout(new BoxLayout(bottomPanel, BoxLayout.LINE_AXIS));
 		buttonStart = new JButton("Start");
 		buttonStart.addActionListener(event -> {
-			model.getState().setupGame(Integer.parseInt(bg.getSelection().getActionCommand()));
+			boardPanel.cancelComputerMove();
+			model.newGame(Integer.parseInt(bg.getSelection().getActionCommand()));
 			boardPanel.setupGraphics();
 			boardPanel.setGameStarted(true);
 			boardPanel.repaint();
@@ -181,6 +185,11 @@ public class MancalaView extends JFrame {
 				break;
 			case ("Computer"):
 				boardPanel.isHuman().put(Player.A, false);
+				boardPanel.getEngines().put(Player.A, MancalaComputerPlayer.Engine.ALPHA_BETA);
+				break;
+			case ("Computer (MCTS)"):
+				boardPanel.isHuman().put(Player.A, false);
+				boardPanel.getEngines().put(Player.A, MancalaComputerPlayer.Engine.MONTE_CARLO);
 				break;
 			}
 			String playerBType = (String) playerBComboBox.getSelectedItem();
@@ -190,34 +199,31 @@ public class MancalaView extends JFrame {
 				break;
 			case ("Computer"):
 				boardPanel.isHuman().put(Player.B, false);
+				boardPanel.getEngines().put(Player.B, MancalaComputerPlayer.Engine.ALPHA_BETA);
+				break;
+			case ("Computer (MCTS)"):
+				boardPanel.isHuman().put(Player.B, false);
+				boardPanel.getEngines().put(Player.B, MancalaComputerPlayer.Engine.MONTE_CARLO);
 				break;
 			}
+			boardPanel.updateStatus();
 		});
 		buttonUndo = new JButton("Undo");
-		buttonUndo.addActionListener(event -> {
-			if (boardPanel.getPreviousState() != null) {
-				model.setState(model.getPreviousState());
-				boardPanel.getTimer().stop();
-				leftBox.remove(boardPanel);
-				leftBox.remove(bottomPanel);
-				boardPanel = boardPanel.getPreviousState();
-				leftBox.add(boardPanel);
-				leftBox.add(bottomPanel);
-				boardPanel.getTimer().start();
-				changeBoardStyle((String) boardTypeComboBox.getSelectedItem());
-				boardPanel.revalidate();
-				boardPanel.repaint();
-			}
-		});
+		buttonUndo.addActionListener(event -> boardPanel.undoMove());
+		buttonRedo = new JButton("Redo");
+		buttonRedo.addActionListener(event -> boardPanel.redoMove());
 		buttonStart.setPreferredSize(new Dimension(80, 40));
 		buttonStart.setMaximumSize(new Dimension(80, 40));
 		buttonUndo.setPreferredSize(new Dimension(80, 40));
 		buttonUndo.setMaximumSize(new Dimension(80, 40));
+		buttonRedo.setPreferredSize(new Dimension(80, 40));
+		buttonRedo.setMaximumSize(new Dimension(80, 40));
 
 		bottomPanel.add(Box.createHorizontalGlue());
 		bottomPanel.add(statusLabelBox);
 		bottomPanel.add(Box.createHorizontalGlue());
 		bottomPanel.add(buttonUndo);
+		bottomPanel.add(buttonRedo);
 		bottomPanel.add(buttonStart);
 		bottomPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
 		leftBox.add(bottomPanel);
@@ -244,6 +250,10 @@ public class MancalaView extends JFrame {
 		return buttonUndo;
 	}
 
+	public JButton getButtonRedo() {
+		return buttonRedo;
+	}
+
 	public MancalaBoardPanel getBoard() {
 		return boardPanel;
 	}
@@ -0,0 +1,92 @@
+import java.util.*;
+
+/**
+ * Scores a position as a weighted sum of the built-in evaluator features. Once a
+ * side has run out of stones the game is decided, and only the final score
+ * counts.
+ * <p>
+ * The weights cannot change once the evaluator is made, since the scores in a
+ * transposition table would then mix two scales. Other weights take a new
+ * evaluator, given to MancalaModel.setEvaluator, which clears the table. They
+ * are also kept small enough that every score fits in the 16 bits a table
+ * entry has for it.
+ *
+ * @author Vincent Stowbunenko
+ *
+ */
+public class MancalaWeightedEvaluator implements MancalaEvaluator {
+
+	// Constants
+	private static final MancalaEvaluator.Feature[] features = MancalaEvaluator.Feature.values();
+	private static final int MAX_STONES = 127; // most stones a pit of MancalaArrayState can hold
+	private static final int MAX_EXTRA_TURNS = 6;
+
+	// Instance variables
+	private final int[] weights; // indexed by feature ordinal
+
+	// Constructors
+
+	/**
+	 * Weights that play well at shallow depths: a stone won is worth 4, a stone in
+	 * play on the own side 1, an extra turn 3 and a capture threat 1 per stone.
+	 */
+	public MancalaWeightedEvaluator() {
+		this(4, 1, 3, 1);
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the weights are so big that a score may not fit in a short
+	 */
+	public MancalaWeightedEvaluator(int storeDifference, int material, int mobility, int capturePotential) {
+		long maxScore = Math.abs((long) storeDifference) * MAX_STONES + Math.abs((long) material) * MAX_STONES
+				+ Math.abs((long) mobility) * MAX_EXTRA_TURNS + Math.abs((long) capturePotential) * MAX_STONES;
+		if (maxScore > Short.MAX_VALUE)
+			throw new IllegalArgumentException("Weights " + storeDifference + ", " + material + ", " + mobility
+					+ ", " + capturePotential + " can score up to " + maxScore + ", more than " + Short.MAX_VALUE);
+		weights = new int[features.length];
+		weights[MancalaEvaluator.Feature.STORE_DIFFERENCE.ordinal()] = storeDifference;
+		weights[MancalaEvaluator.Feature.MATERIAL.ordinal()] = material;
+		weights[MancalaEvaluator.Feature.MOBILITY.ordinal()] = mobility;
+		weights[MancalaEvaluator.Feature.CAPTURE_POTENTIAL.ordinal()] = capturePotential;
+	}
+
+	// Getters and setters
+
+	public int getWeight(MancalaEvaluator.Feature feature) {
+		return weights[feature.ordinal()];
+	}
+
+	@Override
+	public int getStoneValue() {
+		return weights[MancalaEvaluator.Feature.STORE_DIFFERENCE.ordinal()];
+	}
+
+	@Override
+	public int evaluate(MancalaArrayState state) {
+
+		// The game is over, each side keeps its own stones
+		if (state.isEitherSideEmpty())
+			return getStoneValue() * (MancalaEvaluator.Feature.STORE_DIFFERENCE.evaluate(state)
+					+ MancalaEvaluator.Feature.MATERIAL.evaluate(state));
+
+		int score = 0;
+		for (MancalaEvaluator.Feature feature : features)
+			if (weights[feature.ordinal()] != 0)
+				score += weights[feature.ordinal()] * feature.evaluate(state);
+		return score;
+
+	}
+
+	/**
+	 * Produces a list of the weights.
+	 */
+	@Override
+	public String toString() {
+		StringJoiner sj = new StringJoiner(", ");
+		for (MancalaEvaluator.Feature feature : features)
+			sj.add(feature + " " + weights[feature.ordinal()]);
+		return sj.toString();
+	}
+
+}